@@ -0,0 +1,232 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+import pacman.bench.Workload;
+
+/*
+ * Benchmark adapter. It lives in the default package so it can call the engine's
+ * package-private search and collision methods directly; the JMH classes only
+ * see it through pacman.bench.Workload.
+ */
+public class EngineWorkload implements Workload {
+
+    private static final int PAIRS = 1024; // power of two, calls cycle through them
+
+    private GameEngine game;
+    private GameEngine instrumented; // same map and seed, metrics on
+    private GameEngine fielded;      // same map and seed, distance fields instead of searches
+    private GameRenderer renderer;
+    private BufferedImage frame;
+    private Graphics2D frameGraphics;
+
+    private int[] starts;
+    private int[] goals;
+    private char[] inputs;
+    private int next = 0;
+    private GameEngine.Block wallProbe;
+    private GameSnapshot snapshot;
+    private String[] map;
+
+    // environment steps: actions cycled like inputs
+    private PacManEnv env;
+    private int[] actions;
+    private VectorEnv vector;
+    private int[][] vectorActions;
+
+    // hierarchicalChaseStep state
+    private Random chaseRandom;
+    private int chaser;
+    private int chaseTarget;
+    private int chaseCalls = 0;
+
+    @Override
+    public void init(String maze, long seed) {
+        try {
+            map = TileMaps.byName(maze);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        game = new GameEngine(map, seed);
+        game.useRoutingTable = false; // measure the searches themselves
+        game.useDistanceFields = false;
+        game.useHierarchicalSearch = false;
+        instrumented = new GameEngine(map, seed);
+        instrumented.useRoutingTable = false;
+        instrumented.useDistanceFields = false;
+        instrumented.useHierarchicalSearch = false;
+        instrumented.metrics = new TickMetrics();
+        fielded = new GameEngine(map, seed);
+        fielded.useRoutingTable = false;
+
+        Random random = new Random(seed);
+        int[] nodes = game.graph.nodeIds;
+        starts = new int[PAIRS];
+        goals = new int[PAIRS];
+        inputs = new char[PAIRS];
+        char[] directions = { 'U', 'D', 'L', 'R', '\0', '\0', '\0', '\0' };
+        for (int i = 0; i < PAIRS; i++) {
+            starts[i] = nodes[random.nextInt(nodes.length)];
+            goals[i] = nodes[random.nextInt(nodes.length)];
+            inputs[i] = directions[random.nextInt(directions.length)];
+        }
+        env = new PacManEnv(map);
+        env.reset(seed);
+        actions = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            actions[i] = random.nextInt(PacManEnv.ACTIONS);
+        }
+        wallProbe = game.ghosts.iterator().next();
+        snapshot = game.snapshot();
+
+        game.hierarchicalNextStep(starts[0], goals[0]); // builds the hierarchy outside the measurement
+        chaseRandom = new Random(seed);
+        chaser = starts[0];
+        chaseTarget = goals[0];
+
+        renderer = new GameRenderer(game, null);
+        frame = new BufferedImage(Math.min(game.boardWidth, 1024), Math.min(game.boardHeight, 1024),
+                BufferedImage.TYPE_INT_RGB);
+        frameGraphics = frame.createGraphics();
+        frameGraphics.setClip(0, 0, frame.getWidth(), frame.getHeight());
+    }
+
+    private int nextIndex() {
+        return next++ & (PAIRS - 1);
+    }
+
+    @Override
+    public int bfsNextStep() {
+        int i = nextIndex();
+        return game.bfsNextStep(starts[i], goals[i]);
+    }
+
+    @Override
+    public int aStarNextStep() {
+        int i = nextIndex();
+        return game.aStarNextStep(starts[i], goals[i]);
+    }
+
+    @Override
+    public int jpsNextStep() {
+        int i = nextIndex();
+        return game.jpsNextStep(starts[i], goals[i]);
+    }
+
+    @Override
+    public int lastExpanded() {
+        return game.lastExpanded();
+    }
+
+    @Override
+    public int hybridNextStep() {
+        return game.hybridNextStep(starts[nextIndex()]);
+    }
+
+    @Override
+    public int hierarchicalNextStep() {
+        int i = nextIndex();
+        return game.hierarchicalNextStep(starts[i], goals[i]);
+    }
+
+    @Override
+    public int hierarchicalChaseStep() {
+        MazeGraph graph = game.graph;
+        if ((chaseCalls++ & 1) == 0) {
+            int degree = graph.offsets[chaseTarget + 1] - graph.offsets[chaseTarget];
+            chaseTarget = graph.adjacency[graph.offsets[chaseTarget] + chaseRandom.nextInt(degree)];
+        }
+        int next = game.hierarchicalNextStep(chaser, chaseTarget);
+        if (next >= 0) {
+            chaser = next;
+        }
+        if (chaser == chaseTarget) {
+            chaser = starts[nextIndex()]; // caught it, start over from somewhere else
+        }
+        return next;
+    }
+
+    @Override
+    public void move() {
+        if (game.gameOver) {
+            game.restart();
+        }
+        game.step(inputs[nextIndex()]);
+    }
+
+    @Override
+    public void moveInstrumented() {
+        if (instrumented.gameOver) {
+            instrumented.restart();
+        }
+        instrumented.step(inputs[nextIndex()]);
+    }
+
+    @Override
+    public void moveDistanceFields() {
+        if (fielded.gameOver) {
+            fielded.restart();
+        }
+        fielded.step(inputs[nextIndex()]);
+    }
+
+    @Override
+    public void moveCrowd() {
+        fielded.lives = 3;
+        fielded.step(inputs[nextIndex()]);
+    }
+
+    @Override
+    public void decisionThreads(int threads) {
+        fielded.decisionThreads = threads;
+    }
+
+    @Override
+    public void checkWallCollision() {
+        wallProbe.advance(1);
+        game.checkWallCollision(wallProbe);
+    }
+
+    @Override
+    public void saveSnapshot() {
+        game.saveTo(snapshot);
+    }
+
+    @Override
+    public void restoreSnapshot() {
+        game.restore(snapshot);
+    }
+
+    @Override
+    public void draw() {
+        renderer.draw(frameGraphics);
+    }
+
+    @Override
+    public void envStep() {
+        env.step(actions[nextIndex()]);
+        if (env.done()) {
+            env.reset(next);
+        }
+    }
+
+    @Override
+    public void vectorEnv(int envs, int threads) {
+        vector = new VectorEnv(map, envs, threads);
+        vector.reset(next);
+        Random random = new Random(envs);
+        vectorActions = new int[64][envs];
+        for (int[] row : vectorActions) {
+            for (int i = 0; i < envs; i++) {
+                row[i] = random.nextInt(PacManEnv.ACTIONS);
+            }
+        }
+    }
+
+    @Override
+    public void vectorStep() {
+        vector.step(vectorActions[nextIndex() & 63]);
+    }
+}
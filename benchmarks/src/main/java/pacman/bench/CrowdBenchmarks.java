@@ -0,0 +1,59 @@
+package pacman.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Tick time against the number of ghosts on a 255x255 maze. The chasers share
+ * the distance fields (one flood per target, however many ghosts descend it)
+ * and contact tests go through the spatial hash, so the time per tick should
+ * grow much more slowly than the ghost count. decisionThreads > 1 splits the
+ * ghosts' decisions across a pool; the game played is the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CrowdBenchmarks {
+
+    @Param({ "generated-255x255" })
+    public String maze;
+
+    // ghosts besides the map's own four
+    @Param({ "0", "100", "1000", "4000" })
+    public int extraGhosts;
+
+    @Param({ "1", "4" })
+    public int decisionThreads;
+
+    @Param({ "42" })
+    public long seed;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.create();
+        workload.init(maze + ",ghosts=" + extraGhosts, seed);
+        workload.decisionThreads(decisionThreads);
+    }
+
+    @Benchmark
+    public void moveCrowd() {
+        workload.moveCrowd();
+    }
+}
@@ -0,0 +1,57 @@
+package pacman.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Vectorized reinforcement-learning environment: one vectorStep is a tick in
+ * each of `envs` environments of a VectorEnv on `threads` threads, so envs /
+ * (time per vectorStep) is environment steps per second. It includes the
+ * resets of the episodes that end. GameBenchmarks.envStep is a single PacManEnv.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EnvBenchmarks {
+
+    @Param({ "stock" })
+    public String maze;
+
+    @Param({ "64", "1024" })
+    public int envs;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    @Param({ "42" })
+    public long seed;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.create();
+        workload.init(maze, seed);
+        workload.vectorEnv(envs, threads);
+    }
+
+    @Benchmark
+    public void vectorStep() {
+        workload.vectorStep();
+    }
+}
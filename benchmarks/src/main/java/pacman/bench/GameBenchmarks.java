@@ -0,0 +1,109 @@
+package pacman.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Pathfinding, tick, collision and paint cost on the stock maze and on
+ * generated large mazes. Run through BenchmarkMain to get the GC profiler's
+ * allocation rate (gc.alloc.rate.norm = bytes per operation) next to the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameBenchmarks {
+
+    @Param({ "stock", "generated-63x63", "generated-255x255" })
+    public String maze;
+
+    @Param({ "42" })
+    public long seed;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.create();
+        workload.init(maze, seed);
+    }
+
+    @Benchmark
+    public int bfsNextStep() {
+        return workload.bfsNextStep();
+    }
+
+    @Benchmark
+    public int aStarNextStep() {
+        return workload.aStarNextStep();
+    }
+
+    @Benchmark
+    public int hybridNextStep() {
+        return workload.hybridNextStep();
+    }
+
+    @Benchmark
+    public int hierarchicalNextStep() {
+        return workload.hierarchicalNextStep();
+    }
+
+    @Benchmark
+    public int hierarchicalChaseStep() {
+        return workload.hierarchicalChaseStep();
+    }
+
+    @Benchmark
+    public void move() {
+        workload.move();
+    }
+
+    @Benchmark
+    public void moveInstrumented() {
+        workload.moveInstrumented();
+    }
+
+    @Benchmark
+    public void moveDistanceFields() {
+        workload.moveDistanceFields();
+    }
+
+    @Benchmark
+    public void checkWallCollision() {
+        workload.checkWallCollision();
+    }
+
+    @Benchmark
+    public void saveSnapshot() {
+        workload.saveSnapshot();
+    }
+
+    @Benchmark
+    public void restoreSnapshot() {
+        workload.restoreSnapshot();
+    }
+
+    @Benchmark
+    public void envStep() {
+        workload.envStep();
+    }
+
+    @Benchmark
+    public void draw() {
+        workload.draw();
+    }
+}
@@ -0,0 +1,59 @@
+package pacman.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Flat A* against HPA* on a 1001x1001 maze, where a single flat search takes
+ * milliseconds. Kept apart from GameBenchmarks so the full-game benchmarks do
+ * not have to run on a map this size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx2g" })
+public class LargeMazeBenchmarks {
+
+    @Param({ "generated-1001x1001" })
+    public String maze;
+
+    @Param({ "42" })
+    public long seed;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.create();
+        workload.init(maze, seed);
+    }
+
+    @Benchmark
+    public int aStarNextStep() {
+        return workload.aStarNextStep();
+    }
+
+    @Benchmark
+    public int hierarchicalNextStep() {
+        return workload.hierarchicalNextStep();
+    }
+
+    @Benchmark
+    public int hierarchicalChaseStep() {
+        return workload.hierarchicalChaseStep();
+    }
+}
@@ -0,0 +1,82 @@
+package pacman.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * A* against Jump Point Search on the same query pairs, on the stock maze, a
+ * generated maze (corridors, where JPS has little to skip) and generated open
+ * floors (where A* expands the most ties). Besides the time per query, the
+ * expandedPerSearch counter reports the nodes each search expanded, averaged
+ * over the iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SearchBenchmarks {
+
+    @Param({ "stock", "generated-255x255", "open-63x63", "open-255x255" })
+    public String maze;
+
+    @Param({ "42" })
+    public long seed;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.create();
+        workload.init(maze, seed);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Expansions {
+        private long expanded;
+        private long searches;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            expanded = searches = 0;
+        }
+
+        public double expandedPerSearch() {
+            return searches == 0 ? 0 : (double) expanded / searches;
+        }
+
+        void add(int nodes) {
+            expanded += nodes;
+            searches++;
+        }
+    }
+
+    @Benchmark
+    public int aStarNextStep(Expansions expansions) {
+        int next = workload.aStarNextStep();
+        expansions.add(workload.lastExpanded());
+        return next;
+    }
+
+    @Benchmark
+    public int jpsNextStep(Expansions expansions) {
+        int next = workload.jpsNextStep();
+        expansions.add(workload.lastExpanded());
+        return next;
+    }
+}
@@ -0,0 +1,82 @@
+package pacman.bench;
+
+/*
+ * What the benchmarks measure, one call = one operation.
+ *
+ * The game lives in the default package, which named packages (and so JMH's
+ * generated code) cannot reference. EngineWorkload sits in the default package
+ * next to the game classes, implements this interface, and is created by name.
+ */
+public interface Workload {
+
+    // load the map, a name as the game takes it (see TileMaps.byName), start its
+    // games from seed and precompute the query pairs / inputs the calls cycle through
+    void init(String maze, long seed);
+
+    // one live bfsNextStep / aStarNextStep between the next pair of walkable tiles
+    int bfsNextStep();
+
+    int aStarNextStep();
+
+    // one jpsNextStep between the next pair of walkable tiles (same pairs as aStarNextStep)
+    int jpsNextStep();
+
+    // nodes the last bfsNextStep / aStarNextStep / jpsNextStep expanded
+    int lastExpanded();
+
+    // one hybridNextStep (A* look-ahead + BFS) from the next walkable tile
+    int hybridNextStep();
+
+    // one HPA* query between the next pair of walkable tiles (same pairs as aStarNextStep)
+    int hierarchicalNextStep();
+
+    // one HPA* query from a pursuer that follows the answers toward a target
+    // doing a random walk, the way a chasing ghost asks
+    int hierarchicalChaseStep();
+
+    // one full game tick
+    void move();
+
+    // one full game tick with TickMetrics switched on, to compare against move()
+    void moveInstrumented();
+
+    // one full game tick with the ghosts descending shared distance fields
+    // instead of searching (move() runs the live searches)
+    void moveDistanceFields();
+
+    // one tick of the distance-field game with Pac-Man's lives topped up, so a
+    // crowd of ghosts measures ticks rather than game-over restarts
+    void moveCrowd();
+
+    // threads for the ghost decision phase of the moveCrowd game (1 = serial)
+    void decisionThreads(int threads);
+
+    // advance one ghost by its velocity and resolve it against the walls
+    void checkWallCollision();
+
+    // copy the move() game's state into a reused GameSnapshot
+    void saveSnapshot();
+
+    // put the move() game back in the state of the last saveSnapshot
+    void restoreSnapshot();
+
+    // one full frame into an offscreen image (at most 1024 x 1024 of the board)
+    void draw();
+
+    // one PacManEnv step with the next action; an episode that ends starts over
+    void envStep();
+
+    // set up a VectorEnv of envs environments stepping on threads threads, for vectorStep
+    void vectorEnv(int envs, int threads);
+
+    // one VectorEnv step: a tick in every one of its environments
+    void vectorStep();
+
+    static Workload create() {
+        try {
+            return (Workload) Class.forName("EngineWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("EngineWorkload not on the classpath", e);
+        }
+    }
+}
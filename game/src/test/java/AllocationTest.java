@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * No garbage per tick or frame: a game plays TICKS ticks of random input to
+ * warm up the JIT, then the thread's allocation counter is read across TICKS
+ * more. Nothing is left out: deaths, eaten ghosts, restarts and new levels
+ * all count. frames() does the same with a draw after every tick.
+ *
+ * The bound is per run, not per tick. The game is deterministic, so whatever
+ * its code allocates, it allocates at the same tick in every run of a seed.
+ * Yet about one run in ten sees the counter jump once by 64 to 900 bytes, at
+ * a different tick each time: that is the JVM, not the game. Anything that
+ * allocates per tick, even 16 bytes in one tick of a hundred, goes past it.
+ */
+class AllocationTest {
+
+    static final int TICKS = 20_000;
+    static final int FRAMES = 5_000; // measured; a full-board draw costs far more than a tick
+    static final long BOUND = 2048; // bytes per run
+
+    @Test
+    void stockMaze() throws IOException {
+        assertAllocationFree(ticks(new GameEngine(TileMaps.byName("stock"), 1)));
+    }
+
+    @Test
+    void routingTable() throws IOException {
+        assertAllocationFree(ticks(new GameEngine(TileMaps.byName("generated-63x63-3"), 2)));
+    }
+
+    @Test
+    void distanceFields() throws IOException {
+        GameEngine game = new GameEngine(TileMaps.byName("generated-63x63-3"), 3);
+        game.useRoutingTable = false;
+        assertAllocationFree(ticks(game));
+    }
+
+    @Test
+    void frames() throws IOException {
+        assertAllocationFree(frames(new GameEngine(TileMaps.byName("stock"), 4)));
+    }
+
+    static void assertAllocationFree(long allocated) {
+        assumeTrue(allocated >= 0, "this JVM cannot count allocation");
+        assertTrue(allocated <= BOUND, allocated + " bytes allocated after warm-up");
+    }
+
+    // bytes allocated by the second TICKS ticks, -1 if the JVM cannot count them
+    static long ticks(GameEngine game) {
+        RandomPlay input = new RandomPlay(game.seed);
+        for (int i = 0; i < TICKS; i++) {
+            input.step(game);
+        }
+        long before = TickMetrics.allocatedBytes();
+        for (int i = 0; i < TICKS; i++) {
+            input.step(game);
+        }
+        return before < 0 ? -1 : TickMetrics.allocatedBytes() - before;
+    }
+
+    // the same with a draw of the whole board into an offscreen image after each
+    // tick (a map load redraws the maze layer too), measured for FRAMES ticks
+    static long frames(GameEngine game) {
+        GameRenderer renderer = new GameRenderer(game, null);
+        Graphics2D g = new BufferedImage(game.boardWidth, game.boardHeight, BufferedImage.TYPE_INT_RGB)
+                .createGraphics();
+        RandomPlay input = new RandomPlay(game.seed);
+        for (int i = 0; i < TICKS; i++) {
+            input.step(game);
+            renderer.draw(g);
+        }
+        long before = TickMetrics.allocatedBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            input.step(game);
+            renderer.draw(g);
+        }
+        return before < 0 ? -1 : TickMetrics.allocatedBytes() - before;
+    }
+}
@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * A written binary map opens and plays the level it was written from; a header
+ * whose sections don't fit in the file is refused with an IOException when the
+ * map is opened, not an IndexOutOfBoundsException once it is read.
+ */
+class BinaryMapTest {
+
+    @Test
+    void roundTrip(@TempDir Path dir) throws IOException {
+        String[] tileMap = TileMaps.byName("generated-31x31-5");
+        Path file = write(dir, tileMap);
+        GameEngine fromText = new GameEngine(tileMap, 1);
+        GameEngine fromBinary = new GameEngine(BinaryMap.open(file), 1);
+        assertEquals(fromText.stateHash(), fromBinary.stateHash());
+    }
+
+    @Test
+    void tilesPastTheEnd(@TempDir Path dir) throws IOException {
+        Path file = write(dir, TileMaps.byName("generated-31x31-5"));
+        putLong(file, 24, size(file) - 8); // the tile codes need more than one long
+        assertThrows(IOException.class, () -> BinaryMap.open(file));
+    }
+
+    @Test
+    void tilesInTheHeader(@TempDir Path dir) throws IOException {
+        Path file = write(dir, TileMaps.byName("generated-31x31-5"));
+        putLong(file, 24, 8);
+        assertThrows(IOException.class, () -> BinaryMap.open(file));
+    }
+
+    @Test
+    void spawnsPastTheEnd(@TempDir Path dir) throws IOException {
+        Path file = write(dir, TileMaps.byName("generated-31x31-5"));
+        putLong(file, 32, Long.MAX_VALUE - 4);
+        assertThrows(IOException.class, () -> BinaryMap.open(file));
+    }
+
+    @Test
+    void negativeSpawnCount(@TempDir Path dir) throws IOException {
+        Path file = write(dir, TileMaps.byName("generated-31x31-5"));
+        putInt(file, 16, -1);
+        assertThrows(IOException.class, () -> BinaryMap.open(file));
+    }
+
+    @Test
+    void graphPastTheEnd(@TempDir Path dir) throws IOException {
+        Path file = write(dir, TileMaps.byName("generated-31x31-5"));
+        putInt(file, 52, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> BinaryMap.open(file));
+    }
+
+    static Path write(Path dir, String[] tileMap) throws IOException {
+        Path file = dir.resolve("maze.pmap");
+        BinaryMap.write(tileMap, file, true);
+        return file;
+    }
+
+    static long size(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.size();
+        }
+    }
+
+    static void putInt(Path file, int position, int value) throws IOException {
+        overwrite(file, position, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value));
+    }
+
+    static void putLong(Path file, int position, long value) throws IOException {
+        overwrite(file, position, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, value));
+    }
+
+    private static void overwrite(Path file, int position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+}
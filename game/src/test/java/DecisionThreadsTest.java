@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Deciding the ghosts' moves on several threads plays the same game: two
+ * copies of a level, one deciding on one thread and one on THREADS, get the
+ * same random input and must have the same stateHash after every tick.
+ */
+class DecisionThreadsTest {
+
+    static final int THREADS = 4;
+
+    @Test
+    void stockMaze() throws IOException {
+        assertEquals(-1, firstDifference(new GameEngine(TileMaps.byName("stock"), 1), 20_000));
+    }
+
+    @Test
+    void crowdWithDistanceFields() throws IOException {
+        GameEngine game = new GameEngine(TileMaps.byName("generated-63x63-3,ghosts=200"), 2);
+        game.useRoutingTable = false;
+        assertEquals(-1, firstDifference(game, 2_000));
+    }
+
+    @Test
+    void crowdWithLiveSearch() throws IOException {
+        GameEngine game = new GameEngine(TileMaps.byName("generated-31x31-5,ghosts=50"), 3);
+        game.useRoutingTable = false;
+        game.useDistanceFields = false;
+        game.useHierarchicalSearch = false;
+        assertEquals(-1, firstDifference(game, 2_000));
+    }
+
+    // the first tick after which the two games differ, -1 if none does
+    static long firstDifference(GameEngine game, int ticks) {
+        GameEngine serial = game.sameLevel();
+        GameEngine parallel = game.sameLevel();
+        parallel.decisionThreads = THREADS;
+        RandomPlay input = new RandomPlay(game.seed);
+        for (int i = 0; i < ticks; i++) {
+            if (serial.gameOver) {
+                serial.restart();
+                parallel.restart();
+            }
+            char key = input.nextKey();
+            serial.step(key);
+            parallel.step(key);
+            if (serial.stateHash() != parallel.stateHash())
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,56 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/*
+ * A recorded game, written out and read back, replays to the recorded end
+ * state, on a tile map and on a binary map; a different map is refused.
+ */
+class InputRecordingTest {
+
+    @Test
+    void stockMaze() throws IOException {
+        InputRecording recording = roundTrip(record(InputRecording.newGame("stock", 42)));
+        assertTrue(recording.matches(recording.replay(GameEngine.STOCK_MAP)));
+    }
+
+    @Test
+    void binaryMap(@TempDir Path dir) throws IOException {
+        String map = dir.resolve("maze.pmap").toString();
+        BinaryMap.write(TileMaps.byName("generated-31x31-5"), Path.of(map), true);
+        InputRecording recording = roundTrip(record(InputRecording.newGame(map, 7)));
+        assertTrue(recording.matches(recording.replay(InputRecording.newGame(map, recording.seed))));
+    }
+
+    @Test
+    void differentMap() throws IOException {
+        InputRecording recording = record(InputRecording.newGame("stock", 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> recording.replay(InputRecording.newGame("generated-31x31-5", recording.seed)));
+    }
+
+    static InputRecording record(GameEngine game) {
+        InputRecording recording = InputRecording.start(game);
+        InputPolicy input = InputPolicy.random(game.seed, 8);
+        for (long t = 0; t < 5_000 && !game.gameOver; t++) {
+            recording.step(game, input.nextInput(game, t));
+        }
+        return recording;
+    }
+
+    static InputRecording roundTrip(InputRecording recording) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recording.write(out);
+        InputRecording read = InputRecording.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(recording.ticks(), read.ticks());
+        return read;
+    }
+}
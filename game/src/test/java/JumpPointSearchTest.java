@@ -0,0 +1,54 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * JPS against the routing table's shortest distances (BFS distances, which
+ * RoutingTableTest checks against BFS and A*), for every pair of nodes: same
+ * reachability, same path length, and a first step that lies on a shortest
+ * path. The corridor mazes leave JPS little to jump over; the open floors,
+ * with their many equally short paths, are where it prunes.
+ */
+class JumpPointSearchTest {
+
+    @Test
+    void stockMaze() throws IOException {
+        assertEquals(0, mismatches(new GameEngine(TileMaps.byName("stock"), 1)));
+    }
+
+    @Test
+    void generatedMaze() throws IOException {
+        assertEquals(0, mismatches(new GameEngine(TileMaps.byName("generated-31x31-5"), 1)));
+    }
+
+    @Test
+    void openFloor() throws IOException {
+        assertEquals(0, mismatches(new GameEngine(TileMaps.byName("open-41x41-5"), 1)));
+    }
+
+    @Test
+    void openFloorWithPockets() throws IOException {
+        assertEquals(0, mismatches(new GameEngine(TileMaps.byName("open-41x41-20"), 1)));
+    }
+
+    static int mismatches(GameEngine game) {
+        JumpPointSearch jps = new JumpPointSearch(game.graph);
+        int mismatches = 0;
+        for (int from : game.graph.nodeIds) {
+            for (int to : game.graph.nodeIds) {
+                int length = game.routeDistance(from, to);
+                int jLength = jps.search(from, to) ? jps.lastCost() : -1;
+                if (length != jLength) {
+                    mismatches++;
+                } else if (length > 0) {
+                    int step = jps.firstStep(from, to);
+                    if (game.routeDistance(from, step) != 1 || game.routeDistance(step, to) != length - 1)
+                        mismatches++;
+                }
+            }
+        }
+        return mismatches;
+    }
+}
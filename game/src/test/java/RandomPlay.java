@@ -0,0 +1,29 @@
+import java.util.Random;
+
+/*
+ * The button-masher the tests play games with: a random key (or none) every
+ * tick, drawn from a Random seeded with the game's seed, so two games given
+ * the same seed get the same keys. A game that is over is restarted.
+ */
+class RandomPlay {
+
+    private static final char[] KEYS = { 'U', 'D', 'L', 'R', '\0' };
+
+    private final Random random;
+
+    RandomPlay(long seed) {
+        random = new Random(seed);
+    }
+
+    char nextKey() {
+        return KEYS[random.nextInt(KEYS.length)];
+    }
+
+    // one tick with the next key, after a restart if the game is over
+    void step(GameEngine game) {
+        if (game.gameOver) {
+            game.restart();
+        }
+        game.step(nextKey());
+    }
+}
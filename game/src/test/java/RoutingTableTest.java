@@ -0,0 +1,44 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * The routing table against the live searches, for every pair of nodes. BFS
+ * must pick the same step; A* may break ties differently, so its step only has
+ * to lie on a shortest path.
+ */
+class RoutingTableTest {
+
+    @Test
+    void stockMaze() throws IOException {
+        assertEquals(0, mismatches(new GameEngine(TileMaps.byName("stock"), 1)));
+    }
+
+    @Test
+    void generatedMaze() throws IOException {
+        assertEquals(0, mismatches(new GameEngine(TileMaps.byName("generated-31x31-5"), 1)));
+    }
+
+    static int mismatches(GameEngine game) {
+        int mismatches = 0;
+        for (int from : game.graph.nodeIds) {
+            for (int to : game.graph.nodeIds) {
+                int routed = game.routedNextStep(from, to);
+                if (game.bfsNextStep(from, to) != routed) {
+                    mismatches++;
+                }
+
+                int aStep = game.aStarNextStep(from, to);
+                if (aStep < 0 || routed < 0) {
+                    if (aStep != routed)
+                        mismatches++;
+                } else if (from != to && game.routeDistance(aStep, to) != game.routeDistance(from, to) - 1) {
+                    mismatches++;
+                }
+            }
+        }
+        return mismatches;
+    }
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * A restored game plays on exactly as the saved one did. A game is played in
+ * rounds: save, play LOOK_AHEAD ticks, restore, play the same input again. No
+ * round may come back to a different state or end differently the second
+ * time, whichever chase the ghosts use (the searches' cached paths are part of
+ * the snapshot).
+ */
+class SnapshotTest {
+
+    static final int TICKS = 20_000;
+    static final int LOOK_AHEAD = 50;
+
+    @Test
+    void routingTable() throws IOException {
+        assertEquals(0, mismatches(game()));
+    }
+
+    @Test
+    void distanceFields() throws IOException {
+        GameEngine game = game();
+        game.useRoutingTable = false;
+        assertEquals(0, mismatches(game));
+    }
+
+    @Test
+    void hierarchical() throws IOException {
+        GameEngine game = game();
+        game.useRoutingTable = false;
+        game.useDistanceFields = false;
+        assertEquals(0, mismatches(game));
+    }
+
+    @Test
+    void liveSearch() throws IOException {
+        GameEngine game = game();
+        game.useRoutingTable = false;
+        game.useDistanceFields = false;
+        game.useHierarchicalSearch = false;
+        assertEquals(0, mismatches(game));
+    }
+
+    @Test
+    void stockMaze() throws IOException {
+        assertEquals(0, mismatches(new GameEngine(TileMaps.byName("stock"), 1)));
+    }
+
+    static GameEngine game() throws IOException {
+        return new GameEngine(TileMaps.byName("generated-63x63-3"), 2);
+    }
+
+    static int mismatches(GameEngine game) {
+        GameSnapshot saved = new GameSnapshot();
+        RandomPlay input = new RandomPlay(game.seed);
+        char[] ahead = new char[LOOK_AHEAD];
+        int mismatches = 0;
+        for (int i = 0; i < TICKS; i += LOOK_AHEAD) {
+            if (game.gameOver) {
+                game.restart();
+            }
+            for (int k = 0; k < LOOK_AHEAD; k++) {
+                ahead[k] = input.nextKey();
+            }
+            game.saveTo(saved);
+            long now = game.stateHash();
+            long first = playAhead(game, ahead);
+            game.restore(saved);
+            if (game.stateHash() != now || playAhead(game, ahead) != first)
+                mismatches++;
+        }
+        return mismatches;
+    }
+
+    static long playAhead(GameEngine game, char[] keys) {
+        for (char key : keys) {
+            game.step(key);
+        }
+        return game.stateHash();
+    }
+}
@@ -0,0 +1,285 @@
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+
+import javax.swing.JFrame;
+
+/*
+ * Active-rendering front end for the engine.
+ *
+ * Instead of a Swing Timer and repaint(), a dedicated loop thread runs the game:
+ * logic advances in fixed 50 ms ticks (same rate as the Timer mode) no matter how
+ * fast frames are drawn, and frames are drawn into a BufferStrategy as often as
+ * the display refreshes, with sprites interpolated between the last two ticks.
+ * If the loop falls far behind it drops ticks instead of spiralling, and counts
+ * them. Engine state is only ever touched by the loop thread; key events from the
+ * EDT are handed over through volatile fields.
+ */
+public class ActiveGame extends Canvas implements Runnable, KeyListener {
+
+    private static final long serialVersionUID = 1L;
+
+    static final long TICK_NANOS = 50_000_000L; // 20 logic ticks per second
+    static final int MAX_TICKS_PER_FRAME = 5;   // catch-up limit before ticks are dropped
+
+    private final GameEngine game;
+    private final GameRenderer renderer;
+    private InputRecording recording; // this game's input, saved as a replay when it ends
+    private final long frameNanos; // one display refresh
+    // the canvas is at most screen-sized; on a bigger board it shows the part
+    // around Pac-Man, with the board's top-left corner at (-cameraX, -cameraY)
+    private final int viewWidth;
+    private final int viewHeight;
+
+    private volatile boolean running = false;
+    private volatile char pendingInput = '\0';
+    private volatile boolean restartRequested = false;
+    private volatile boolean metricsToggleRequested = false;
+    private Thread loopThread;
+
+    // ===== COUNTERS (written by the loop thread, safe to read from any thread) =====
+    private volatile long frameCount = 0;
+    private volatile long tickCount = 0;
+    private volatile long missedTicks = 0;
+    private volatile long lastFrameNanos = 0;
+    private volatile long maxFrameNanos = 0;
+    private volatile double averageFrameNanos = 0; // exponential moving average
+
+    public ActiveGame() {
+        this(GameEngine.STOCK_MAP);
+    }
+
+    // any map from TileMaps; -Dpacman.seed=N as for PacMan
+    public ActiveGame(String[] tileMap) {
+        game = new GameEngine(tileMap, Long.getLong("pacman.seed", System.nanoTime()));
+        game.decisionThreads = Runtime.getRuntime().availableProcessors(); // only used for crowds
+        game.plannerThreads = Runtime.getRuntime().availableProcessors();
+        game.chooseSearches(System.getProperty("pacman.search", "")); // e.g. -Dpacman.search=r:mcts,p:mcts
+        renderer = new GameRenderer(game, this);
+        recording = InputRecording.start(game);
+        Rectangle screen = GraphicsEnvironment.isHeadless() ? new Rectangle(game.boardWidth, game.boardHeight)
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        viewWidth = Math.min(game.boardWidth, screen.width - 64);
+        viewHeight = Math.min(game.boardHeight, screen.height - 64);
+        setPreferredSize(new Dimension(viewWidth, viewHeight));
+        setBackground(Color.BLACK);
+        setIgnoreRepaint(true); // we paint ourselves
+        addKeyListener(this);
+        setFocusable(true);
+        if (TickMetrics.enabledByProperty()) {
+            game.metrics = new TickMetrics();
+        }
+
+        int refreshRate = GraphicsEnvironment.isHeadless() ? DisplayMode.REFRESH_RATE_UNKNOWN
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+        frameNanos = 1_000_000_000L / (refreshRate > 0 ? refreshRate : 60);
+    }
+
+    // Must be called once the canvas is displayable (after the frame is packed).
+    public void start() {
+        if (running)
+            return;
+        createBufferStrategy(2);
+        running = true;
+        loopThread = new Thread(this, "pacman-game-loop");
+        loopThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (loopThread != null) {
+            try {
+                loopThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+
+        while (running) {
+            long frameStart = System.nanoTime();
+            accumulator += frameStart - previous;
+            previous = frameStart;
+
+            if (restartRequested) {
+                restartRequested = false; // a key released mid-game restarts nothing
+                if (game.gameOver) {
+                    game.restart();
+                    recording = InputRecording.start(game);
+                }
+            }
+            if (metricsToggleRequested) {
+                metricsToggleRequested = false;
+                toggleMetrics();
+            }
+
+            // fixed-timestep logic
+            int steps = 0;
+            while (accumulator >= TICK_NANOS) {
+                if (steps == MAX_TICKS_PER_FRAME) {
+                    long dropped = accumulator / TICK_NANOS;
+                    missedTicks += dropped;
+                    if (game.metrics != null) {
+                        game.metrics.ticksLate(0, dropped);
+                    }
+                    accumulator %= TICK_NANOS;
+                    break;
+                }
+                char input = pendingInput;
+                pendingInput = '\0';
+                if (game.gameOver) {
+                    game.step(input);
+                } else {
+                    recording.step(game, input);
+                    if (game.gameOver)
+                        recording.saveFinished();
+                }
+                accumulator -= TICK_NANOS;
+                tickCount++;
+                steps++;
+            }
+            // every tick after the first in one frame is catch-up, i.e. ran late
+            if (steps > 1 && game.metrics != null) {
+                game.metrics.ticksLate(steps - 1, 0);
+            }
+            game.dirty.clear(); // every frame is a full redraw here
+
+            render((double) accumulator / TICK_NANOS);
+            recordFrame(System.nanoTime() - frameStart);
+
+            // no vsync guarantee from BufferStrategy, so wait out the rest of the refresh
+            long sleepNanos = frameNanos - (System.nanoTime() - frameStart);
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void render(double alpha) {
+        BufferStrategy strategy = getBufferStrategy();
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    g.setColor(Color.BLACK);
+                    g.fillRect(0, 0, getWidth(), getHeight());
+                    int cameraX = camera(game.pacman.x(), game.boardWidth, viewWidth);
+                    int cameraY = camera(game.pacman.y(), game.boardHeight, viewHeight);
+                    g.translate(-cameraX, -cameraY);
+                    g.setClip(cameraX, cameraY, viewWidth, viewHeight); // so only what is in view gets drawn
+                    renderer.draw(g, alpha);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    // left (top) edge of the view centered on position, kept on the board
+    private static int camera(int position, int boardSize, int viewSize) {
+        return Math.max(0, Math.min(position - viewSize / 2, boardSize - viewSize));
+    }
+
+    private void recordFrame(long nanos) {
+        lastFrameNanos = nanos;
+        if (nanos > maxFrameNanos) {
+            maxFrameNanos = nanos;
+        }
+        averageFrameNanos = frameCount == 0 ? nanos : averageFrameNanos * 0.95 + nanos * 0.05;
+        frameCount++;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    // logic ticks dropped because the loop fell more than MAX_TICKS_PER_FRAME behind
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    public long getMaxFrameNanos() {
+        return maxFrameNanos;
+    }
+
+    public double getAverageFrameNanos() {
+        return averageFrameNanos;
+    }
+
+    // ========================= EVENT HANDLERS =========================
+
+    @Override
+    public void keyTyped(KeyEvent e) {
+    }
+
+    @Override
+    public void keyPressed(KeyEvent e) {
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_UP -> pendingInput = 'U';
+            case KeyEvent.VK_DOWN -> pendingInput = 'D';
+            case KeyEvent.VK_LEFT -> pendingInput = 'L';
+            case KeyEvent.VK_RIGHT -> pendingInput = 'R';
+            case KeyEvent.VK_M -> metricsToggleRequested = true;
+        }
+    }
+
+    @Override
+    public void keyReleased(KeyEvent e) {
+        restartRequested = true; // the loop thread restarts if the game is over
+    }
+
+    // M shows / hides the metrics overlay, switching metrics on the first time.
+    // Runs on the loop thread, which owns the engine and the renderer.
+    private void toggleMetrics() {
+        if (game.metrics == null) {
+            game.metrics = new TickMetrics();
+        }
+        renderer.showMetrics = !renderer.showMetrics;
+    }
+
+    // Main Program: the counters are shown in the title bar once a second
+
+    // java ActiveGame [map], map as for App
+    public static void main(String[] args) throws java.io.IOException {
+        JFrame frame = new JFrame("Pac-Man (active rendering)");
+        ActiveGame game = new ActiveGame(TileMaps.byName(args.length > 0 ? args[0] : "stock"));
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setResizable(false);
+        frame.add(game);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+        game.requestFocus();
+        game.start();
+
+        long[] lastFrames = { 0 };
+        new javax.swing.Timer(1000, e -> {
+            long frames = game.getFrameCount();
+            frame.setTitle(String.format(
+                    "Pac-Man (active rendering) - %d fps, frame %.2f ms avg / %.2f ms max, %d ticks, %d missed",
+                    frames - lastFrames[0], game.getAverageFrameNanos() / 1e6, game.getMaxFrameNanos() / 1e6,
+                    game.getTickCount(), game.getMissedTicks()));
+            lastFrames[0] = frames;
+        }).start();
+    }
+}
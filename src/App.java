@@ -1,23 +1,38 @@
+import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+
 import javax.swing.JFrame;
+import javax.swing.JScrollPane;
 
 public class App {
+    // java App [--active] [map] : map is "stock" (default), "generated-RxC[-seed]" or a map file, see TileMaps
     public static void main(String[] args) throws Exception {
-        int rowCount = 21;
-        int columnCount = 19;
-        int tileSize = 32;
-        int boardWidth = columnCount * tileSize;
-        int boardHeight = rowCount * tileSize;
+        // java App --active : dedicated loop thread + BufferStrategy instead of the Swing Timer
+        if (args.length > 0 && args[0].equals("--active")) {
+            ActiveGame.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        String[] tileMap = TileMaps.byName(args.length > 0 ? args[0] : "stock");
 
         JFrame frame = new JFrame("Pac Man");
-        // frame.setVisible(true);
-        frame.setSize(boardWidth, boardHeight);
-        frame.setLocationRelativeTo(null);
         frame.setResizable(false);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        PacMan pacmanGame = new PacMan();
-        frame.add(pacmanGame);
+        // the window is sized from the map; a board bigger than the screen scrolls
+        PacMan pacmanGame = new PacMan(tileMap);
+        Dimension board = pacmanGame.getPreferredSize();
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        if (board.width > screen.width || board.height > screen.height) {
+            JScrollPane scroller = new JScrollPane(pacmanGame);
+            scroller.setPreferredSize(new Dimension(Math.min(board.width, screen.width - 64),
+                    Math.min(board.height, screen.height - 64)));
+            frame.add(scroller);
+        } else {
+            frame.add(pacmanGame);
+        }
         frame.pack();
+        frame.setLocationRelativeTo(null);
         pacmanGame.requestFocus();
         frame.setVisible(true);
 
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Plays many independent headless games at once, for tuning the ghost AI.
+ *
+ * Every worker in a ForkJoinPool (one per core by default) pulls game numbers off
+ * a shared counter and plays each game on its own GameEngine with its own input
+ * policy. The games share the maze's graph and routing table, which they only
+ * read, and the results aggregate. A reporter prints the
+ * running aggregate once a second while the batch is going.
+ *
+ *   java BatchRunner games=10000 policy=random threads=8 maxTicks=20000 seed=1 map=stock
+ *   policy = random | scripted:<UDLR letters>
+ *   map = stock | generated-RxC[-seed] | <map file>  (see TileMaps)
+ */
+public class BatchRunner {
+
+    static final char[] GHOST_TYPES = { 'r', 'p', 'b', 'o' };
+
+    // ===== RESULTS =====
+
+    static class GameResult {
+        int score;
+        int livesLost;
+        long ticks;
+        int[] kills = new int[GHOST_TYPES.length]; // per ghost, in GHOST_TYPES order
+    }
+
+    // running totals over finished games; merged under its own lock
+    static class BatchStats {
+        long games;
+        long totalScore;
+        int minScore = Integer.MAX_VALUE;
+        int maxScore = Integer.MIN_VALUE;
+        long totalLivesLost;
+        long totalTicks;
+        long[] kills = new long[GHOST_TYPES.length];
+
+        synchronized void add(GameResult result) {
+            games++;
+            totalScore += result.score;
+            minScore = Math.min(minScore, result.score);
+            maxScore = Math.max(maxScore, result.score);
+            totalLivesLost += result.livesLost;
+            totalTicks += result.ticks;
+            for (int i = 0; i < kills.length; i++) {
+                kills[i] += result.kills[i];
+            }
+        }
+
+        synchronized String summary(double seconds) {
+            if (games == 0)
+                return "0 games";
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d games, %.0f games/s, %.2fM ticks/s | score avg %.1f min %d max %d"
+                    + " | lives lost avg %.2f | ticks survived avg %.0f | kills",
+                    games, games / seconds, totalTicks / seconds / 1e6, (double) totalScore / games,
+                    minScore, maxScore, (double) totalLivesLost / games, (double) totalTicks / games));
+            for (int i = 0; i < GHOST_TYPES.length; i++) {
+                sb.append(' ').append(GHOST_TYPES[i]).append('=').append(kills[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    // ===== RUNNER =====
+
+    private final int games;
+    private final int threads;
+    private final long maxTicks;
+    private final long seed;
+    private final String policy;
+    private final GameEngine maze; // every game shares its graph and routing table
+
+    BatchRunner(int games, int threads, long maxTicks, long seed, String policy, String[] tileMap) {
+        this.games = games;
+        this.threads = threads;
+        this.maxTicks = maxTicks;
+        this.seed = seed;
+        this.policy = policy;
+        maze = new GameEngine(tileMap, seed);
+        maze.graph.denseOffsets(); // built lazily otherwise, by the first games at once
+        maze.graph.denseAdjacency();
+    }
+
+    InputPolicy policyFor(int game) {
+        if (policy.startsWith("scripted:")) {
+            return InputPolicy.scripted(policy.substring("scripted:".length()), 8);
+        }
+        return InputPolicy.random(seed * 1_000_003L + game, 8);
+    }
+
+    // one full game until it is over or hits maxTicks
+    GameResult play(int game) {
+        // seeded per game, so any single game of a batch can be rerun exactly
+        GameEngine engine = new GameEngine(maze, seed * 1_000_003L + game);
+        InputPolicy input = policyFor(game);
+        int startLives = engine.lives;
+
+        long tick = 0;
+        while (!engine.gameOver && tick < maxTicks) {
+            engine.step(input.nextInput(engine, tick));
+            tick++;
+        }
+
+        GameResult result = new GameResult();
+        result.score = engine.score;
+        result.livesLost = startLives - Math.max(engine.lives, 0);
+        result.ticks = tick;
+        for (int i = 0; i < GHOST_TYPES.length; i++) {
+            result.kills[i] = engine.killsByGhost[GHOST_TYPES[i]];
+        }
+        return result;
+    }
+
+    BatchStats run() throws InterruptedException {
+        BatchStats stats = new BatchStats();
+        AtomicInteger nextGame = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+
+        List<ForkJoinTask<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                int game;
+                while ((game = nextGame.getAndIncrement()) < games) {
+                    stats.add(play(game));
+                }
+            }));
+        }
+
+        // stream the aggregate while the games run
+        pool.shutdown();
+        while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+            System.out.println(stats.summary((System.nanoTime() - start) / 1e9));
+        }
+        for (ForkJoinTask<?> worker : workers) {
+            worker.join(); // rethrows anything a worker died of
+        }
+        System.out.println("done: " + stats.summary((System.nanoTime() - start) / 1e9));
+        return stats;
+    }
+
+    public static void main(String[] args) throws InterruptedException, java.io.IOException {
+        int games = 10_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxTicks = 20_000;
+        long seed = 1;
+        String policy = "random";
+        String map = "stock";
+
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            switch (kv[0]) {
+                case "games" -> games = Integer.parseInt(kv[1]);
+                case "threads" -> threads = Integer.parseInt(kv[1]);
+                case "maxTicks" -> maxTicks = Long.parseLong(kv[1]);
+                case "seed" -> seed = Long.parseLong(kv[1]);
+                case "policy" -> policy = kv[1];
+                case "map" -> map = kv[1];
+                default -> throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+
+        new BatchRunner(games, threads, maxTicks, seed, policy, TileMaps.byName(map)).run();
+    }
+}
@@ -0,0 +1,267 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/*
+ * Compact binary level file, read through a memory-mapped FileChannel.
+ *
+ * A String[] map costs two bytes per tile plus an object per row and has to be
+ * read and scanned whole. This format stores 2 bits per tile and is mapped, not
+ * read: the engine builds its wall / food / power bitsets straight from the
+ * mapped tile words (32 tiles per long, a few shifts and masks per word), and
+ * the OS pages the file in as it is touched. An optional graph section holds
+ * MazeGraph's arrays, so buildGraph() is one bulk copy per array instead of a
+ * pass over every tile and its four neighbors.
+ *
+ * Layout, little-endian, sections 8-byte aligned:
+ *
+ *   header   64 bytes: magic "PMAP", version, rows, columns, spawn count, flags,
+ *            tiles / spawns / graph section offsets (graph 0 if absent),
+ *            graph node count, graph edge count
+ *   tiles    ceil(rows * columns / 32) longs; tile id = r * columns + c is bits
+ *            2 * (id % 32) .. +1 of long id / 32: 0 empty, 1 pellet, 2 power, 3 wall
+ *   spawns   spawn count x (int tile id, int tile code 'P' / 'r' / 'p' / 'b' / 'o')
+ *   graph    int offsets[tiles + 1], adjacency[edges], nodeIds[nodes], denseIndex[tiles]
+ *
+ * One mapping covers the file, so a level is limited to 2 GB (about 8 billion
+ * tiles without a graph section, some 80 million with one).
+ *
+ *   java BinaryMap convert <map name> <file.pmap> [--graph]   (map name as for TileMaps)
+ *   java BinaryMap info <file.pmap>
+ */
+public class BinaryMap {
+
+    static final int MAGIC = 0x50414D50; // "PMAP"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int FLAG_GRAPH = 1;
+
+    static final int EMPTY = 0, PELLET = 1, POWER = 2, WALL = 3;
+
+    final Path file;
+    final int rowCount;
+    final int columnCount;
+    private final MappedByteBuffer buffer;
+    private final int spawnCount;
+    private final long tilesOffset;
+    private final long spawnsOffset;
+    private final long graphOffset;
+    private final int graphNodes;
+    private final int graphEdges;
+
+    private BinaryMap(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+            throw new IOException(file + ": not a Pac-Man binary map");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException(file + ": unsupported binary map version " + buffer.getInt(4));
+        rowCount = buffer.getInt(8);
+        columnCount = buffer.getInt(12);
+        spawnCount = buffer.getInt(16);
+        int flags = buffer.getInt(20);
+        tilesOffset = buffer.getLong(24);
+        spawnsOffset = buffer.getLong(32);
+        graphOffset = (flags & FLAG_GRAPH) != 0 ? buffer.getLong(40) : 0;
+        graphNodes = buffer.getInt(48);
+        graphEdges = buffer.getInt(52);
+
+        long tiles = (long) rowCount * columnCount;
+        if (rowCount < 1 || columnCount < 1 || tiles > Integer.MAX_VALUE - 64 || spawnCount < 0
+                || graphNodes < 0 || graphEdges < 0
+                || !inFile(tilesOffset, 8L * codeWords((int) tiles))
+                || !inFile(spawnsOffset, 8L * spawnCount)
+                || graphOffset != 0 && !inFile(graphOffset, 4 * (2 * tiles + 1 + graphEdges + graphNodes)))
+            throw new IOException(file + ": truncated or corrupt binary map");
+    }
+
+    // whether a section of bytes at offset lies past the header and inside the file
+    private boolean inFile(long offset, long bytes) {
+        return offset >= HEADER_BYTES && offset <= buffer.capacity() && bytes <= buffer.capacity() - offset;
+    }
+
+    // Map the file read-only. Nothing is read until the engine asks for it.
+    static BinaryMap open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + ": binary maps are limited to 2 GB");
+            // the mapping stays valid after the channel is closed
+            return new BinaryMap(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    int tileCount() {
+        return rowCount * columnCount;
+    }
+
+    // Fill one-bit-per-tile grids (sized (tiles + 63) / 64) from the tile codes;
+    // returns the number of pellets plus power pellets.
+    int readTiles(long[] wallGrid, long[] foodGrid, long[] powerGrid) {
+        LongBuffer codes = buffer.slice((int) tilesOffset, codeWords(tileCount()) * 8)
+                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        int words = codes.remaining();
+        int food = 0;
+        for (int w = 0; w < wallGrid.length; w++) {
+            long a = 2 * w < words ? codes.get(2 * w) : 0;          // tiles 64w .. 64w + 31
+            long b = 2 * w + 1 < words ? codes.get(2 * w + 1) : 0;  // tiles 64w + 32 .. 64w + 63
+            long loA = a & 0x5555555555555555L, hiA = (a >>> 1) & 0x5555555555555555L;
+            long loB = b & 0x5555555555555555L, hiB = (b >>> 1) & 0x5555555555555555L;
+            wallGrid[w] = compact(loA & hiA) | compact(loB & hiB) << 32;
+            foodGrid[w] = compact(loA & ~hiA) | compact(loB & ~hiB) << 32;
+            powerGrid[w] = compact(hiA & ~loA) | compact(hiB & ~loB) << 32;
+            food += Long.bitCount(foodGrid[w]) + Long.bitCount(powerGrid[w]);
+        }
+        return food;
+    }
+
+    // gather the even bits of x into its low 32 bits
+    private static long compact(long x) {
+        x &= 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+
+    int spawnCount() {
+        return spawnCount;
+    }
+
+    int spawnTile(int i) {
+        return buffer.getInt((int) spawnsOffset + 8 * i);
+    }
+
+    char spawnType(int i) {
+        return (char) buffer.getInt((int) spawnsOffset + 8 * i + 4);
+    }
+
+    boolean hasGraph() {
+        return graphOffset != 0;
+    }
+
+    // the stored graph; walkable is the engine's (it equals the complement of the walls)
+    MazeGraph graph(long[] walkable) {
+        int tiles = tileCount();
+        IntBuffer ints = buffer.slice((int) graphOffset, 4 * (2 * tiles + 1 + graphEdges + graphNodes))
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        int[] offsets = new int[tiles + 1];
+        int[] adjacency = new int[graphEdges];
+        int[] nodeIds = new int[graphNodes];
+        int[] denseIndex = new int[tiles];
+        ints.get(offsets).get(adjacency).get(nodeIds).get(denseIndex);
+        return new MazeGraph(rowCount, columnCount, walkable, offsets, adjacency, denseIndex, nodeIds);
+    }
+
+    // checksum of the level itself (tiles and spawns), for InputRecording
+    int crc() {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice((int) tilesOffset, (int) (spawnsOffset + 8L * spawnCount - tilesOffset)));
+        return (int) crc.getValue();
+    }
+
+    // ===== WRITING =====
+
+    private static int codeWords(int tiles) {
+        return (tiles + 31) >>> 5;
+    }
+
+    // Write tileMap (TileMaps codes) as a binary map, with MazeGraph's arrays if withGraph.
+    static void write(String[] tileMap, Path file, boolean withGraph) throws IOException {
+        int rows = tileMap.length, cols = tileMap[0].length();
+        int tiles = rows * cols;
+
+        long[] codes = new long[codeWords(tiles)];
+        long[] walkable = new long[(tiles + 63) >>> 6];
+        int spawns = 0;
+        for (int r = 0; r < rows; r++) {
+            String row = tileMap[r];
+            for (int c = 0; c < cols; c++) {
+                int id = r * cols + c;
+                char tile = row.charAt(c);
+                long code = switch (tile) {
+                    case 'X' -> WALL;
+                    case ' ' -> PELLET;
+                    case '*' -> POWER;
+                    default -> EMPTY;
+                };
+                codes[id >>> 5] |= code << ((id & 31) * 2);
+                if (tile != 'X')
+                    walkable[id >>> 6] |= 1L << id;
+                if ("Prpbo".indexOf(tile) >= 0)
+                    spawns++;
+            }
+        }
+        MazeGraph graph = withGraph ? new MazeGraph(rows, cols, walkable) : null;
+
+        long tilesOffset = HEADER_BYTES;
+        long spawnsOffset = tilesOffset + 8L * codes.length;
+        long graphOffset = align8(spawnsOffset + 8L * spawns);
+        long size = graph != null
+                ? graphOffset + 4L * (graph.offsets.length + graph.adjacency.length + graph.nodeIds.length + tiles)
+                : spawnsOffset + 8L * spawns;
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("map too large for one binary map file (" + size + " bytes)");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, rows).putInt(12, cols).putInt(16, spawns)
+                    .putInt(20, graph != null ? FLAG_GRAPH : 0)
+                    .putLong(24, tilesOffset).putLong(32, spawnsOffset).putLong(40, graph != null ? graphOffset : 0)
+                    .putInt(48, graph != null ? graph.nodeCount : 0)
+                    .putInt(52, graph != null ? graph.adjacency.length : 0);
+
+            out.slice((int) tilesOffset, 8 * codes.length).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(codes);
+
+            int at = (int) spawnsOffset;
+            for (int r = 0; r < rows; r++) {
+                String row = tileMap[r];
+                for (int c = 0; c < cols; c++) {
+                    char tile = row.charAt(c);
+                    if ("Prpbo".indexOf(tile) >= 0) {
+                        out.putInt(at, r * cols + c).putInt(at + 4, tile);
+                        at += 8;
+                    }
+                }
+            }
+
+            if (graph != null) {
+                out.slice((int) graphOffset, (int) (size - graphOffset)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+                        .put(graph.offsets).put(graph.adjacency).put(graph.nodeIds).put(graph.denseIndex);
+            }
+            out.force();
+        }
+    }
+
+    private static long align8(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("convert")) {
+            long start = System.nanoTime();
+            String[] tileMap = TileMaps.byName(args[1]);
+            boolean withGraph = args.length > 3 && args[3].equals("--graph");
+            write(tileMap, Path.of(args[2]), withGraph);
+            System.out.printf("wrote %s: %dx%d%s in %.0f ms%n", args[2], tileMap.length, tileMap[0].length(),
+                    withGraph ? " with graph" : "", (System.nanoTime() - start) / 1e6);
+        } else if (args.length >= 2 && args[0].equals("info")) {
+            BinaryMap map = open(Path.of(args[1]));
+            System.out.printf("%s: %dx%d, %d spawns, %s%n", args[1], map.rowCount, map.columnCount, map.spawnCount,
+                    map.hasGraph() ? map.graphNodes + " nodes / " + map.graphEdges + " edges stored" : "no graph");
+        } else {
+            System.out.println("usage: java BinaryMap convert <map> <file.pmap> [--graph] | info <file.pmap>");
+        }
+    }
+}
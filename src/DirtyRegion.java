@@ -0,0 +1,65 @@
+/*
+ * Screen area that changed since the renderer last looked, kept as the union of
+ * every rectangle added. The engine adds the old and new bounds of whatever moved
+ * and the tiles of eaten pellets; anything that changes the whole picture (reset,
+ * new level, scared-mode sprite swap) marks it full instead. The renderer repaints
+ * the region and then clears it.
+ */
+public class DirtyRegion {
+
+    private int minX, minY, maxX, maxY; // maxX / maxY are exclusive
+    private boolean empty = true;
+    private boolean full = false;
+
+    void add(int x, int y, int width, int height) {
+        if (full || width <= 0 || height <= 0)
+            return;
+
+        if (empty) {
+            minX = x;
+            minY = y;
+            maxX = x + width;
+            maxY = y + height;
+            empty = false;
+        } else {
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x + width);
+            maxY = Math.max(maxY, y + height);
+        }
+    }
+
+    void markFull() {
+        full = true;
+        empty = false;
+    }
+
+    void clear() {
+        empty = true;
+        full = false;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    boolean isFull() {
+        return full;
+    }
+
+    int x() {
+        return minX;
+    }
+
+    int y() {
+        return minY;
+    }
+
+    int width() {
+        return maxX - minX;
+    }
+
+    int height() {
+        return maxY - minY;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Shortest-path distance from one source tile to the walkable tiles, by a BFS
+ * flood over the MazeGraph. The graph is undirected, so a ghost heads for the
+ * source by stepping to any neighbor one tile closer: no per-ghost search, and
+ * the field is only restarted when the source moves to another tile.
+ *
+ * The flood is lazy: it only runs as far as the farthest tile anyone has asked
+ * about since the source last moved, and resumes from where it stopped when a
+ * farther tile is asked for. All ghosts chasing one target share one flood that
+ * is never bigger than what the farthest of them needed.
+ *
+ * Arrays are indexed by the graph's dense node index, and the flood walks the
+ * graph's dense adjacency, so expanding a node touches no tile-id tables. A slot
+ * is valid only when its mark equals the current stamp, so restarting never
+ * clears anything. Arrays are allocated by the first update(), so a field
+ * nobody uses costs nothing. A crowd of ghosts spread over a big board asks
+ * for nearly every tile after each restart, which makes the flood most of the
+ * tick there.
+ */
+public class DistanceField {
+
+    private final MazeGraph graph;
+    private int[] distance;
+    private int[] mark;
+    private int[] queue;
+    private int stamp = 0;
+    private int head = 0, tail = 0;
+
+    private int source = -1;
+
+    DistanceField(MazeGraph graph) {
+        this.graph = graph;
+    }
+
+    // Restart the field at source unless it already is for it. Returns true if it restarted.
+    boolean update(int source) {
+        if (source == this.source)
+            return false;
+        this.source = source;
+        if (mark == null) {
+            distance = new int[graph.nodeCount];
+            mark = new int[graph.nodeCount];
+            queue = new int[graph.nodeCount];
+        }
+        if (++stamp == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        head = tail = 0;
+        if (source >= 0) {
+            int s = graph.denseIndex[source];
+            mark[s] = stamp;
+            distance[s] = 0;
+            queue[tail++] = s;
+        }
+        return true;
+    }
+
+    int source() {
+        return source;
+    }
+
+    // nodes the flood has expanded since the source last moved
+    int expanded() {
+        return head;
+    }
+
+    // tiles from node to the source, -1 if unreachable; floods further if needed
+    int distance(int node) {
+        if (node < 0 || source < 0)
+            return -1;
+        int target = graph.denseIndex[node];
+        if (mark[target] != stamp) {
+            floodUntil(target);
+        }
+        return mark[target] == stamp ? distance[target] : -1;
+    }
+
+    // First neighbor (in U, D, L, R order) one tile closer to the source;
+    // node itself if it is the source, -1 if the source cannot be reached.
+    // When node has been reached, every tile one layer closer has been too.
+    int nextStep(int node) {
+        int d = distance(node);
+        if (d <= 0)
+            return d == 0 ? node : -1;
+
+        int[] offsets = graph.denseOffsets();
+        int[] adjacency = graph.denseAdjacency();
+        int dense = graph.denseIndex[node];
+        for (int e = offsets[dense]; e < offsets[dense + 1]; e++) {
+            int nb = adjacency[e];
+            if (mark[nb] == stamp && distance[nb] == d - 1)
+                return graph.nodeIds[nb];
+        }
+        return -1; // not reached: a BFS layer always has a parent
+    }
+
+    // expand queued nodes until target is discovered or the flood is exhausted
+    private void floodUntil(int target) {
+        int[] offsets = graph.denseOffsets();
+        int[] adjacency = graph.denseAdjacency();
+
+        while (head < tail && mark[target] != stamp) {
+            int current = queue[head++];
+            int next = distance[current] + 1;
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int v = adjacency[e];
+                if (mark[v] != stamp) {
+                    mark[v] = stamp;
+                    distance[v] = next;
+                    queue[tail++] = v;
+                }
+            }
+        }
+    }
+}
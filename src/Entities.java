@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/*
+ * The moving entities of a game, Pac-Man and the ghosts, as parallel primitive
+ * arrays indexed by entity id. Pac-Man is entity 0 and the ghost in slot s of
+ * GameEngine.ghosts is entity s + 1, so the ghosts are one contiguous run.
+ *
+ * GameEngine.Block is a view of one entity for the per-ghost logic. Loops over
+ * every entity (positions at the start of a tick, dirty marking, resets, the
+ * state hash) walk the arrays instead, and copying the whole set is one
+ * arraycopy per array. The walls and pellets are bitsets in GameEngine already.
+ */
+public class Entities {
+
+    static final int PACMAN = 0;
+
+    int count;
+    int[] x;
+    int[] y;
+    int[] startX;
+    int[] startY;
+    int[] prevX; // position at the start of the current tick
+    int[] prevY;
+    int[] velocityX;
+    int[] velocityY;
+    char[] direction; // U D L R
+    char[] type;      // r, o, p, b for ghosts, ' ' for Pac-Man
+
+    Entities(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        x = new int[capacity];
+        y = new int[capacity];
+        startX = new int[capacity];
+        startY = new int[capacity];
+        prevX = new int[capacity];
+        prevY = new int[capacity];
+        velocityX = new int[capacity];
+        velocityY = new int[capacity];
+        direction = new char[capacity];
+        type = new char[capacity];
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        startX = Arrays.copyOf(startX, capacity);
+        startY = Arrays.copyOf(startY, capacity);
+        prevX = Arrays.copyOf(prevX, capacity);
+        prevY = Arrays.copyOf(prevY, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        type = Arrays.copyOf(type, capacity);
+    }
+
+    // drop every entity; the arrays keep their capacity for the next level
+    void clear() {
+        count = 0;
+    }
+
+    // A new entity standing still at (x, y), facing up; returns its id.
+    int add(int x, int y, char type) {
+        if (count == this.x.length) {
+            grow(count * 2);
+        }
+        int id = count++;
+        place(id, x, y);
+        this.type[id] = type;
+        return id;
+    }
+
+    // put entity id at (x, y) as its start position, standing still, facing up
+    void place(int id, int x, int y) {
+        this.x[id] = x;
+        this.y[id] = y;
+        startX[id] = x;
+        startY[id] = y;
+        prevX[id] = x;
+        prevY[id] = y;
+        velocityX[id] = 0;
+        velocityY[id] = 0;
+        direction[id] = 'U';
+    }
+
+    // Make this an exact copy of other: one arraycopy per array. Allocates only
+    // when other holds more entities than this has room for.
+    void copyFrom(Entities other) {
+        int n = other.count;
+        if (x.length < n) {
+            allocate(other.x.length);
+        }
+        System.arraycopy(other.x, 0, x, 0, n);
+        System.arraycopy(other.y, 0, y, 0, n);
+        System.arraycopy(other.startX, 0, startX, 0, n);
+        System.arraycopy(other.startY, 0, startY, 0, n);
+        System.arraycopy(other.prevX, 0, prevX, 0, n);
+        System.arraycopy(other.prevY, 0, prevY, 0, n);
+        System.arraycopy(other.velocityX, 0, velocityX, 0, n);
+        System.arraycopy(other.velocityY, 0, velocityY, 0, n);
+        System.arraycopy(other.direction, 0, direction, 0, n);
+        System.arraycopy(other.type, 0, type, 0, n);
+        count = n;
+    }
+
+    // the start of a tick: every entity's current position becomes its previous one
+    void rememberPositions() {
+        System.arraycopy(x, 0, prevX, 0, count);
+        System.arraycopy(y, 0, prevY, 0, count);
+    }
+
+    // entities from..to-1 back to their start positions, standing still (directions are kept)
+    void reset(int from, int to) {
+        System.arraycopy(startX, from, x, from, to - from);
+        System.arraycopy(startY, from, y, from, to - from);
+        Arrays.fill(velocityX, from, to, 0);
+        Arrays.fill(velocityY, from, to, 0);
+    }
+}
@@ -0,0 +1,1855 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Headless simulation core for Pac-Man.
+ *
+ * Everything that used to live inside the PacMan panel and did not need a screen
+ * lives here: the tile map, the Block entities, the graph, the ghost AI, scoring,
+ * ghost collisions and scared mode. Nothing in this class touches AWT or Swing,
+ * so a game can be advanced with step() as fast as the CPU allows (tests, AI
+ * evaluation, servers with no display). The PacMan panel just renders it.
+ */
+
+public class GameEngine {
+
+    // One entity of `entities` (Pac-Man or a ghost) seen as an object. Its
+    // position, velocity, direction and type live in the entity arrays; the view
+    // holds only its id and what has no place there.
+    class Block {
+        final int id;
+        final int width;
+        final int height;
+
+        // ghosts only: live-search paths toward Pac-Man's tile and toward the
+        // look-ahead tile, walked until the target moves (see plannedNextStep)
+        PathCache pacmanPath;
+        PathCache aheadPath;
+        final int slot; // ghosts only: index in ghosts (id - 1), the item id in ghostTiles
+
+        Block(int id, int width, int height) {
+            this.id = id;
+            this.width = width;
+            this.height = height;
+            this.slot = id - 1;
+        }
+
+        int x() {
+            return entities.x[id];
+        }
+
+        int y() {
+            return entities.y[id];
+        }
+
+        int prevX() {
+            return entities.prevX[id];
+        }
+
+        int prevY() {
+            return entities.prevY[id];
+        }
+
+        char direction() {
+            return entities.direction[id];
+        }
+
+        // r, o, p, b for ghosts, ' ' for Pac-Man
+        char ghostType() {
+            return entities.type[id];
+        }
+
+        void moveTo(int x, int y) {
+            entities.x[id] = x;
+            entities.y[id] = y;
+        }
+
+        // one step at the current velocity, backwards if sign is -1
+        void advance(int sign) {
+            entities.x[id] += sign * entities.velocityX[id];
+            entities.y[id] += sign * entities.velocityY[id];
+        }
+
+        void updateDirection(char direction) {
+            char prevDirection = entities.direction[id];
+            entities.direction[id] = direction;
+            updateVelocity();
+
+            // try move one step in that direction
+            advance(1);
+
+            // revert if we hit a wall
+            if (hitsWall(this)) {
+                advance(-1);
+                entities.direction[id] = prevDirection;
+                updateVelocity();
+            }
+        }
+
+        void updateVelocity() {
+            int speed = tileSize / 8;
+
+            switch (entities.direction[id]) {
+                case 'U' -> {
+                    entities.velocityX[id] = 0;
+                    entities.velocityY[id] = -speed;
+                }
+                case 'D' -> {
+                    entities.velocityX[id] = 0;
+                    entities.velocityY[id] = speed;
+                }
+                case 'L' -> {
+                    entities.velocityX[id] = -speed;
+                    entities.velocityY[id] = 0;
+                }
+                case 'R' -> {
+                    entities.velocityX[id] = speed;
+                    entities.velocityY[id] = 0;
+                }
+            }
+        }
+
+        void reset() {
+            entities.reset(id, id + 1);
+        }
+    }
+
+    // ENTITIES: Pac-Man and the ghosts, see Entities. Refilled by loadMap().
+    final Entities entities = new Entities(8);
+
+    int rowCount;
+    int columnCount;
+    int tileSize = 32;
+    int boardWidth;
+    int boardHeight;
+    boolean scared = false;
+    // scared mode is counted in ticks, not wall-clock time, so runs are reproducible
+    int scaredTicksLeft = 0;
+    static final int SCARED_TICKS = 140; // 7 s at 20 ticks per second
+
+    // queued input: what the player wants to do next
+    char queuedDirection = '\0';
+
+    // which way Pac-Man's sprite faces; only changes when a queued turn succeeds
+    char pacmanFacing = 'R';
+
+    // X = wall, O = skip, P = pac man, ' ' = food, * = power food
+    // b/o/p/r ghosts; other maps come from TileMaps
+    static final String[] STOCK_MAP = {
+            "XXXXXXXXXXXXXXXXXXX",
+            "X*       X       *X",
+            "X XX XXX X XXX XX X",
+            "X                 X",
+            "X XX X XXXXX X XX X",
+            "X    X       X    X",
+            "XXXX XXXX XXXX XXXX",
+            "OOOX X       X XOOO",
+            "XXXX X XXrXX X XXXX",
+            "O       bpo       O",
+            "XXXX X XXXXX X XXXX",
+            "OOOX X       X XOOO",
+            "XXXX X XXXXX X XXXX",
+            "X        X        X",
+            "X XX XXX X XXX XX X",
+            "X  X     P     X  X",
+            "XX X X XXXXX X X XX",
+            "X    X   X   X    X",
+            "X XXXXXX X XXXXXX X",
+            "X*               *X",
+            "XXXXXXXXXXXXXXXXXXX"
+    };
+
+    // spawn order (row-major), so every run updates the ghosts in the same order.
+    // The tick walks it by index: a for-each would allocate an Iterator per loop.
+    final ArrayList<Block> ghosts = new ArrayList<>();
+    private int ghostCount; // spawned so far by the loadMap() under way
+    Block pacman;
+
+    // FOOD: one bit per tile for pellets, power pellets in their own layer.
+    // foodRemaining counts both, so the level is clear when it reaches 0.
+    long[] foodGrid;
+    long[] powerGrid;
+    int foodRemaining;
+
+    // COLLISION GRID: one bit per tile (id = r * columnCount + c), set for walls.
+    // Built in loadMap() so a moving block only tests the tiles it overlaps.
+    long[] wallGrid;
+    // TUNNELS: a row whose two edge tiles are open wraps around left-right, a
+    // column whose two edge tiles are open wraps top-bottom. Derived in loadMap().
+    // They are only for moving: the graph (and so ghost pathing) has no wrap edges.
+    boolean[] tunnelRows;
+    boolean[] tunnelColumns;
+    // bumped by every loadMap() so renderers know when to rebuild cached layers
+    int mapVersion = 0;
+
+    // GHOST TILES: spatial hash of the ghosts by tile, kept up to date as they
+    // move, so contact tests cost the same with 4 ghosts or 4000
+    private SpatialHash ghostTiles;
+    private int[] caught; // ghostsTouching() result, by ghost slot
+
+    // DECISION PHASE: each tick every ghost's next tile is decided first, against
+    // this tick's chase targets, and only then are the ghosts moved in list order.
+    // Deciding reads the graph, the routing table or distance fields and Pac-Man's
+    // targets, and writes nothing but the ghost's own slots and path caches; every
+    // random draw happens while moving. So with decisionThreads > 1 the decisions
+    // are split across a ForkJoinPool (each worker with its own search buffers)
+    // and the game is the same tick for tick as on one thread.
+    int decisionThreads = 1;
+    static final int DECISION_BLOCK = 16; // ghosts a worker takes at a time
+    private ForkJoinPool decisionPool;
+    private DecisionTask[] decisionTasks;
+    private final AtomicInteger nextDecision = new AtomicInteger();
+    private int pacmanTarget, pinkyTarget, inkyTarget; // Pac-Man's tile, 3 and 4 tiles ahead
+    private int[] decidedStep;    // by ghost slot: tile to turn toward, -1 = carry on
+    private int[] decidedAltStep; // Inky's BFS step
+    private long[] decisionNanos; // by ghost slot, with TickMetrics on
+
+    // DIRTY REGION: screen area changed by the steps since the renderer last cleared it
+    final DirtyRegion dirty = new DirtyRegion();
+
+    // GRAPH: int-indexed CSR graph, one node per walkable tile
+    MazeGraph graph;
+    private long[] graphWalls; // the wall grid graph was built from
+
+    // ROUTING TABLE: all-pairs next hop and distance, rebuilt with the graph.
+    // Entry [from * nodeCount + to]; nextHop is -1 when `to` is unreachable.
+    static final int ROUTING_TABLE_MAX_NODES = 2048; // n^2 shorts each, ~16 MB at the cap
+    private short[] nextHop;
+    private short[] hopDistance;
+    // false = always run live BFS / A* (used to check the table against the searches)
+    boolean useRoutingTable = true;
+
+    // DISTANCE FIELDS: used instead of per-ghost searches when there is no routing
+    // table. One reverse BFS per chase target (Pac-Man's tile, Pinky's and Inky's
+    // look-ahead tiles), reflooded only when that target tile changes; every ghost
+    // chasing the target then just descends the field.
+    private DistanceField pacmanField;
+    private DistanceField pinkyField;
+    private DistanceField inkyField;
+    // false = live BFS / A* per ghost when there is no routing table
+    boolean useDistanceFields = true;
+
+    // HIERARCHY: HPA* for the A* chases when there is neither a routing table nor
+    // distance fields. Built with the graph when that is the chase in use (see
+    // prepareHierarchy), else on first use, and on a level reload only the
+    // clusters whose tiles changed are rebuilt (none, when the same map comes back).
+    private HierarchicalGraph hierarchy;
+    boolean useHierarchicalSearch = true;
+
+    // LIVE SEARCH PER GHOST TYPE: which search a chasing ghost runs when it has to
+    // search, indexed by ghostType. '\0' keeps the ghost's own (Blinky BFS, Pinky
+    // A*, Inky both); SEARCH_JPS jumps across open areas and finds equally short
+    // paths while expanding far fewer nodes than A*.
+    static final char SEARCH_BFS = 'B', SEARCH_ASTAR = 'A', SEARCH_JPS = 'J';
+    final char[] searchByGhost = new char[128];
+
+    // MONTE CARLO TREE SEARCH: ghost types set to SEARCH_MCTS (any type, Clyde
+    // too) are steered together by a MonteCarloPlanner, which plays futures of
+    // the game on copies of it for plannerBudgetNanos at the start of every tick
+    // (or plannerRollouts rollouts per thread, when that is set: reproducible
+    // runs) on plannerThreads threads. Its choices land in plannedStep by slot;
+    // UNPLANNED leaves a ghost to its usual logic. Choose it through
+    // chooseSearches, which keeps `planning` up to date.
+    static final char SEARCH_MCTS = 'M';
+    static final int UNPLANNED = -2;
+    long plannerBudgetNanos = 5_000_000;
+    int plannerRollouts = 0;
+    int plannerThreads = 1;
+    boolean rollout = false; // a planner's copy of the game: plays, doesn't plan
+    private boolean planning = false; // some ghost type is SEARCH_MCTS
+    private MonteCarloPlanner planner;
+    int[] plannedStep;
+
+    // PATH CACHE: with live search, a ghost keeps its last path and walks it until
+    // the target moves. A target that moved onto the path or next to its end is
+    // followed by trimming or extending the path; each extension can make it up
+    // to 2 tiles longer than shortest, and past MAX_PATH_SLACK it is searched again.
+    static final int MAX_PATH_SLACK = 4;
+    boolean usePathCache = true;
+    long pathSearches = 0;  // searches actually run for a ghost
+    long pathReuses = 0;    // searches avoided: target unchanged
+    long pathRepairs = 0;   // searches avoided: path trimmed or extended
+
+    // INSTRUMENTATION: null (the default) measures nothing; see TickMetrics
+    TickMetrics metrics;
+
+    char[] directions = { 'U', 'D', 'L', 'R' };
+    // all randomness in the game comes from here; seed is what the current game started from
+    GameRandom random;
+    long seed;
+    long tick = 0; // steps since the game started
+    int score = 0;
+    int lives = 3;
+    boolean gameOver = false;
+    // lives taken by each ghost type this game, indexed by ghostType ('r', 'p', ...)
+    int[] killsByGhost = new int[128];
+    int ghostsEaten = 0; // while scared, this game
+
+    // where the level comes from: a String[] tile map, or a mapped binary map file
+    private String[] tileMap;
+    private BinaryMap binaryMap;
+
+    public GameEngine() {
+        this(STOCK_MAP);
+    }
+
+    // any rectangular map using the tile codes above
+    public GameEngine(String[] tileMap) {
+        this(tileMap, System.nanoTime());
+    }
+
+    // Same map + same seed + same inputs = the same game, tick for tick.
+    public GameEngine(String[] tileMap, long seed) {
+        this.tileMap = tileMap;
+        this.rowCount = tileMap.length;
+        this.columnCount = tileMap[0].length();
+        this.boardWidth = columnCount * tileSize;
+        this.boardHeight = rowCount * tileSize;
+
+        startGame(seed);
+    }
+
+    // A new game on maze's level that shares its graph and routing table instead of
+    // building its own. Both are only read once built, so engines playing the same
+    // maze side by side (a VectorEnv's, the planner's copies) keep one of each.
+    GameEngine(GameEngine maze, long seed) {
+        this.tileMap = maze.tileMap;
+        this.binaryMap = maze.binaryMap;
+        this.rowCount = maze.rowCount;
+        this.columnCount = maze.columnCount;
+        this.boardWidth = columnCount * tileSize;
+        this.boardHeight = rowCount * tileSize;
+
+        maze.graph.denseOffsets(); // built lazily otherwise, maybe on two threads at once
+        maze.graph.denseAdjacency();
+        graph = maze.graph;
+        graphWalls = maze.graphWalls;
+        nextHop = maze.nextHop;
+        hopDistance = maze.hopDistance;
+        pacmanField = new DistanceField(graph);
+        pinkyField = new DistanceField(graph);
+        inkyField = new DistanceField(graph);
+        startGame(seed); // buildGraph() finds the walls unchanged and keeps it all
+    }
+
+    // A level from a binary map file: loadMap() and buildGraph() read the mapped
+    // file directly, without a String[] in between.
+    public GameEngine(BinaryMap map, long seed) {
+        this.binaryMap = map;
+        this.rowCount = map.rowCount;
+        this.columnCount = map.columnCount;
+        this.boardWidth = columnCount * tileSize;
+        this.boardHeight = rowCount * tileSize;
+
+        startGame(seed);
+    }
+
+    // the tile map, or null for a game on a binary map
+    String[] tileMap() {
+        return tileMap;
+    }
+
+    // checksum of the level, whichever form it came in
+    int mapCrc() {
+        return binaryMap != null ? binaryMap.crc() : InputRecording.mapCrc(tileMap);
+    }
+
+    // fresh map, full lives, no score, RNG reseeded
+    private void startGame(long seed) {
+        this.seed = seed;
+        if (random == null) {
+            random = new GameRandom(seed);
+        } else {
+            random.setState(seed); // as new GameRandom(seed), without the garbage
+        }
+        loadMap();
+        buildGraph(); // build graph from tile map
+        initializeGhosts();
+
+        queuedDirection = '\0';
+        scared = false;
+        scaredTicksLeft = 0;
+        tick = 0;
+        lives = 3;
+        score = 0;
+        gameOver = false;
+        Arrays.fill(killsByGhost, 0);
+        ghostsEaten = 0;
+    }
+
+    private void initializeGhosts() {
+        for (int i = 0; i < ghosts.size(); i++) {
+            Block ghost = ghosts.get(i);
+            char newDirection = directions[random.nextInt(4)];
+            ghost.updateDirection(newDirection);
+        }
+        fileGhosts();
+    }
+
+    // The map is the same every time, so a restart or the next level refills
+    // what the first load allocated: the grids, the ghosts' Blocks (with their
+    // path caches, stale but already grown) and the per-ghost arrays.
+    public void loadMap() {
+        entities.clear();
+        entities.add(0, 0, ' '); // Pac-Man's id, placed when the map is read
+        int gridWords = (rowCount * columnCount + 63) >>> 6;
+        if (wallGrid == null) {
+            wallGrid = new long[gridWords]; // walls never change, set again below to the same bits
+            foodGrid = new long[gridWords];
+            powerGrid = new long[gridWords];
+        } else {
+            Arrays.fill(foodGrid, 0);
+            Arrays.fill(powerGrid, 0);
+        }
+        ghostCount = 0;
+        foodRemaining = 0;
+        mapVersion++;
+        dirty.markFull();
+
+        if (binaryMap != null) {
+            // bitsets straight from the mapped tile codes, spawns from the spawn table (row-major)
+            foodRemaining = binaryMap.readTiles(wallGrid, foodGrid, powerGrid);
+            for (int i = 0; i < binaryMap.spawnCount(); i++) {
+                int id = binaryMap.spawnTile(i);
+                spawn(binaryMap.spawnType(i), id / columnCount, id % columnCount);
+            }
+        } else {
+            for (int r = 0; r < rowCount; r++) {
+                for (int c = 0; c < columnCount; c++) {
+                    String row = tileMap[r];
+                    char tile = row.charAt(c);
+
+                    if (tile == 'X') { // wall
+                        setBit(wallGrid, r * columnCount + c);
+                    } else if (tile == ' ') {
+                        setBit(foodGrid, r * columnCount + c);
+                        foodRemaining++;
+                    } else if (tile == '*') { // power food
+                        setBit(powerGrid, r * columnCount + c);
+                        foodRemaining++;
+                    } else {
+                        spawn(tile, r, c);
+                    }
+
+                }
+            }
+        }
+
+        if (caught == null) {
+            ghostTiles = new SpatialHash(ghosts.size());
+            caught = new int[ghosts.size()];
+            decidedStep = new int[ghosts.size()];
+            decidedAltStep = new int[ghosts.size()];
+            decisionNanos = new long[ghosts.size()];
+            plannedStep = new int[ghosts.size()];
+            tunnelRows = new boolean[rowCount];
+            tunnelColumns = new boolean[columnCount];
+        } else {
+            ghostTiles.clear();
+            Arrays.fill(caught, 0);
+            Arrays.fill(decidedStep, 0);
+            Arrays.fill(decidedAltStep, 0);
+            Arrays.fill(decisionNanos, 0);
+        }
+        fileGhosts();
+        Arrays.fill(plannedStep, UNPLANNED);
+
+        for (int r = 0; r < rowCount; r++) {
+            tunnelRows[r] = !isWallTile(r, 0) && !isWallTile(r, columnCount - 1);
+        }
+        for (int c = 0; c < columnCount; c++) {
+            tunnelColumns[c] = !isWallTile(0, c) && !isWallTile(rowCount - 1, c);
+        }
+    }
+
+    // Pac-Man or a ghost starting on tile (r, c); other tiles are ignored
+    private void spawn(char tile, int r, int c) {
+        int x = c * tileSize;
+        int y = r * tileSize;
+
+        if (tile == 'b' || tile == 'o' || tile == 'p' || tile == 'r') {
+            // Inky (blue), Clyde (orange), Pinky, Blinky (red)
+            int id = entities.add(x, y, tile);
+            if (ghostCount++ == ghosts.size()) { // else the same ghost as last load, same id
+                Block ghost = new Block(id, tileSize, tileSize);
+                ghost.pacmanPath = new PathCache();
+                ghost.aheadPath = new PathCache();
+                ghosts.add(ghost);
+            }
+        } else if (tile == 'P') { // pacman
+            entities.place(Entities.PACMAN, x, y);
+            if (pacman == null) {
+                pacman = new Block(Entities.PACMAN, tileSize, tileSize);
+            }
+            pacmanFacing = 'R';
+        }
+    }
+
+    // Bitset helpers for the tile grids
+
+    static boolean testBit(long[] bits, int id) {
+        return (bits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    static void setBit(long[] bits, int id) {
+        bits[id >>> 6] |= 1L << id;
+    }
+
+    // clears the bit and returns whether it was set
+    static boolean clearBit(long[] bits, int id) {
+        long mask = 1L << id;
+        boolean wasSet = (bits[id >>> 6] & mask) != 0;
+        bits[id >>> 6] &= ~mask;
+        return wasSet;
+    }
+
+    // Graph Helpers
+
+    // Build graph: node for non-wall tiles, edges to 4-neighbors
+    public void buildGraph() {
+        // A restart or the next level on the same maze keeps the graph and all
+        // that hangs off it (routing table, fields, hierarchy, search buffers), so
+        // the first ticks of the level don't re-grow what the last one had.
+        if (graph != null && graph.rowCount == rowCount && graph.columnCount == columnCount
+                && Arrays.equals(wallGrid, graphWalls)) {
+            graphWalls = wallGrid;
+            return;
+        }
+        graphWalls = wallGrid;
+        if (binaryMap != null && binaryMap.hasGraph()) {
+            graph = binaryMap.graph(MazeGraph.walkableFromWalls(wallGrid, rowCount * columnCount));
+        } else {
+            graph = MazeGraph.fromWalls(wallGrid, rowCount, columnCount);
+        }
+
+        // search buffers are reallocated by their first search on the new graph
+        buildRoutingTable();
+        if (hierarchy != null) {
+            hierarchy.update(graph); // same board size, so only changed clusters are redone
+        } else {
+            prepareHierarchy();
+        }
+        pacmanField = new DistanceField(graph);
+        pinkyField = new DistanceField(graph);
+        inkyField = new DistanceField(graph);
+    }
+
+    // One BFS per source node. The first step is carried down the BFS tree, so the
+    // table picks exactly the step bfsNextStep would: O(n^2) once instead of O(n)
+    // per ghost per tile.
+    private void buildRoutingTable() {
+        int n = graph.nodeCount;
+        if (n > ROUTING_TABLE_MAX_NODES) {
+            // too big to hold all pairs, the chase helpers fall back to live search
+            nextHop = null;
+            hopDistance = null;
+            return;
+        }
+
+        nextHop = new short[n * n];
+        hopDistance = new short[n * n];
+        Arrays.fill(nextHop, (short) -1);
+        int[] queue = new int[n];
+        int[] offsets = graph.offsets;
+        int[] adjacency = graph.adjacency;
+        int[] denseIndex = graph.denseIndex;
+
+        for (int s = 0; s < n; s++) {
+            int base = s * n;
+            int head = 0, tail = 0;
+            queue[tail++] = s;
+            nextHop[base + s] = (short) s;
+
+            while (head < tail) {
+                int current = queue[head++];
+                int id = graph.nodeIds[current];
+                for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+                    int v = denseIndex[adjacency[e]];
+                    if (nextHop[base + v] != -1)
+                        continue;
+                    nextHop[base + v] = current == s ? (short) v : nextHop[base + current];
+                    hopDistance[base + v] = (short) (hopDistance[base + current] + 1);
+                    queue[tail++] = v;
+                }
+            }
+        }
+    }
+
+    private boolean hasRoutingTable() {
+        return useRoutingTable && nextHop != null;
+    }
+
+    private boolean usesHierarchy() {
+        return !hasRoutingTable() && !useDistanceFields && useHierarchicalSearch;
+    }
+
+    // Build the HPA* hierarchy now if the chase settings will use it, rather than
+    // in the middle of the first tick that needs it (most of a second on a
+    // 1001x1001 maze). buildGraph() calls it; call it again after changing the
+    // use* flags on a built engine.
+    void prepareHierarchy() {
+        if (hierarchy == null && usesHierarchy())
+            hierarchy = new HierarchicalGraph(graph);
+    }
+
+    // Next step from start toward goal, by the cheapest means available: the
+    // routing table, else the chase target's distance field, else a live search
+    // (one of the SEARCH_* kinds).
+    private int chaseNextStep(SearchBuffers buffers, int start, int goal, DistanceField field, PathCache path,
+            char search) {
+        if (hasRoutingTable())
+            return routedNextStep(start, goal);
+        if (useDistanceFields)
+            return fieldNextStep(field, start, goal);
+        if (search == SEARCH_ASTAR && useHierarchicalSearch)
+            return hierarchicalNextStep(start, goal);
+        if (path != null && usePathCache)
+            return plannedNextStep(buffers, path, start, goal, search);
+        return switch (search) {
+            case SEARCH_ASTAR -> aStarNextStep(buffers, start, goal);
+            case SEARCH_JPS -> jpsNextStep(buffers, start, goal);
+            default -> bfsNextStep(buffers, start, goal);
+        };
+    }
+
+    // Set searchByGhost from a list like "p:jps,r:mcts" (ghost type : bfs | astar
+    // | jps | mcts); the command line's --search= and -Dpacman.search= for the front ends.
+    // Clyde runs no search of his own, so only mcts can steer him.
+    void chooseSearches(String spec) {
+        if (spec.isEmpty())
+            return;
+        for (String choice : spec.split(",")) {
+            if (choice.length() < 3 || choice.charAt(1) != ':' || "rpbo".indexOf(choice.charAt(0)) < 0)
+                throw new IllegalArgumentException("expected <r|p|b|o>:<bfs|astar|jps|mcts>, got: " + choice);
+            char search = switch (choice.substring(2)) {
+                case "bfs" -> SEARCH_BFS;
+                case "astar" -> SEARCH_ASTAR;
+                case "jps" -> SEARCH_JPS;
+                case "mcts" -> SEARCH_MCTS;
+                default -> throw new IllegalArgumentException("unknown search: " + choice);
+            };
+            if (choice.charAt(0) == 'o' && search != SEARCH_MCTS)
+                throw new IllegalArgumentException("Clyde wanders without a search, only o:mcts applies, got: " + choice);
+            searchByGhost[choice.charAt(0)] = search;
+        }
+        planning = false;
+        for (char search : searchByGhost) {
+            planning |= search == SEARCH_MCTS;
+        }
+    }
+
+    // the search a ghost runs: its type's choice in searchByGhost, else its usual one
+    private char searchFor(Block ghost, char usual) {
+        char chosen = ghost != null ? searchByGhost[ghost.ghostType()] : '\0';
+        return chosen != '\0' && chosen != SEARCH_MCTS ? chosen : usual;
+    }
+
+    // Live search with a path cache: walk the cached path while it still leads
+    // to the goal, repair it when the goal moved onto it or one tile past its
+    // end, and only search when neither works.
+    private int plannedNextStep(SearchBuffers buffers, PathCache path, int start, int goal, char search) {
+        if (start < 0 || goal < 0)
+            return -1;
+        if (start == goal)
+            return start;
+
+        if (path.mapVersion == mapVersion && path.follow(start)) {
+            int oldGoal = path.target();
+            if (goal == oldGoal) {
+                buffers.pathReuses++;
+                return path.next();
+            }
+            if (path.truncateAt(goal)) {
+                buffers.pathRepairs++;
+                return path.next();
+            }
+            if (path.slack + 2 <= MAX_PATH_SLACK && isNeighbor(oldGoal, goal)) {
+                path.append(goal);
+                path.slack += 2;
+                buffers.pathRepairs++;
+                return path.next();
+            }
+        }
+
+        buffers.pathSearches++;
+        boolean found = switch (search) {
+            case SEARCH_ASTAR -> aStarSearch(buffers, start, goal);
+            case SEARCH_JPS -> jpsSearch(buffers, start, goal);
+            default -> bfsSearch(buffers, start, goal);
+        };
+        if (!found) {
+            path.clear();
+            return -1;
+        }
+
+        // Copy the parent chain goal -> start into the cache, start first. JPS
+        // parents are jump points in a straight line, so fill in the tiles between.
+        int[] parent = search == SEARCH_JPS ? buffers.jumpPoints.parent : buffers.parent;
+        int count = 1;
+        for (int n = goal; n != start; n = parent[n]) {
+            count += graph.heuristic(n, parent[n]);
+        }
+        int[] nodes = path.reset(count);
+        int i = count - 1;
+        for (int n = goal; n != start; n = parent[n]) {
+            int from = parent[n];
+            int stride = graph.row(n) != graph.row(from) ? columnCount : 1;
+            if (n < from)
+                stride = -stride;
+            for (int t = n; t != from; t -= stride) {
+                nodes[i--] = t;
+            }
+        }
+        nodes[0] = start;
+        path.mapVersion = mapVersion;
+        return path.next();
+    }
+
+    private boolean isNeighbor(int a, int b) {
+        for (int e = graph.offsets[a]; e < graph.offsets[a + 1]; e++) {
+            if (graph.adjacency[e] == b)
+                return true;
+        }
+        return false;
+    }
+
+    int hierarchicalNextStep(int start, int goal) {
+        if (hierarchy == null) {
+            hierarchy = new HierarchicalGraph(graph);
+        }
+        int next = hierarchy.nextStep(start, goal);
+        if (metrics != null) {
+            metrics.searched(TickMetrics.EXPANDED_HPA, hierarchy.lastExpanded());
+        }
+        return next;
+    }
+
+    private int fieldNextStep(DistanceField field, int start, int goal) {
+        if (start < 0 || goal < 0)
+            return -1;
+        field.update(goal);
+        int expandedBefore = field.expanded();
+        int next = field.nextStep(start);
+        if (metrics != null && field.expanded() != expandedBefore) {
+            metrics.searched(TickMetrics.EXPANDED_FIELD, field.expanded() - expandedBefore);
+        }
+        return next;
+    }
+
+    // O(1) replacement for bfsNextStep / aStarNextStep
+    int routedNextStep(int start, int goal) {
+        if (start < 0 || goal < 0)
+            return -1;
+        if (start == goal)
+            return start;
+
+        short hop = nextHop[graph.denseIndex[start] * graph.nodeCount + graph.denseIndex[goal]];
+        return hop < 0 ? -1 : graph.nodeIds[hop];
+    }
+
+    // shortest path length in tiles, -1 if unreachable
+    int routeDistance(int a, int b) {
+        int i = graph.denseIndex[a] * graph.nodeCount + graph.denseIndex[b];
+        return nextHop[i] < 0 ? -1 : hopDistance[i];
+    }
+
+    // tiles between two nodes: the routed distance where there is a routing
+    // table (-1 if unreachable), else the Manhattan distance
+    int tileDistance(int a, int b) {
+        return nextHop != null ? routeDistance(a, b) : graph.heuristic(a, b);
+    }
+
+    // a new game on this level and seed, with this game's chase settings
+    GameEngine sameLevel() {
+        GameEngine copy = new GameEngine(this, seed);
+        copy.useRoutingTable = useRoutingTable;
+        copy.useDistanceFields = useDistanceFields;
+        copy.useHierarchicalSearch = useHierarchicalSearch;
+        copy.usePathCache = usePathCache;
+        System.arraycopy(searchByGhost, 0, copy.searchByGhost, 0, searchByGhost.length);
+        copy.planning = planning;
+        copy.plannerBudgetNanos = plannerBudgetNanos;
+        copy.plannerRollouts = plannerRollouts;
+        copy.plannerThreads = plannerThreads;
+        copy.prepareHierarchy();
+        return copy;
+    }
+
+    private boolean isCenteredOnTile(Block b) {
+        return (b.x() % tileSize == 0) && (b.y() % tileSize == 0);
+    }
+
+    // node id under the block's top-left corner, -1 if that is a wall or off the board
+    int getNodeForBlock(Block b) {
+        int c = b.x() / tileSize;
+        int r = b.y() / tileSize;
+        return graph.nodeAt(r, c);
+    }
+
+    // A tile a few steps ahead of Pac-Man, used for Pinky/Inky targeting
+    private int getAheadOfPacmanNode(int tilesAhead) {
+        int r = pacman.y() / tileSize;
+        int c = pacman.x() / tileSize;
+
+        switch (pacman.direction()) {
+            case 'U' -> r -= tilesAhead;
+            case 'D' -> r += tilesAhead;
+            case 'L' -> c -= tilesAhead;
+            case 'R' -> c += tilesAhead;
+        }
+
+        // clamp within bounds
+        r = Math.max(0, Math.min(rowCount - 1, r));
+        c = Math.max(0, Math.min(columnCount - 1, c));
+
+        int target = graph.nodeAt(r, c);
+        if (target < 0) {
+            // if it's a wall or invalid, fall back to Pac-Man's tile
+            return getNodeForBlock(pacman);
+        }
+        return target;
+    }
+
+    // walk the parent links back from goal to the first step after start
+    private static int firstStep(SearchBuffers buffers, int start, int goal) {
+        int[] parent = buffers.parent;
+        int step = goal;
+        int prev = parent[step];
+        while (prev != -1 && prev != start) {
+            step = prev;
+            prev = parent[step];
+        }
+        return step;
+    }
+
+    // BFS (for Blinky and Inky)
+
+    // returns next node on shortest path from start to goal, -1 if there is none
+    int bfsNextStep(int start, int goal) {
+        return bfsNextStep(searches, start, goal);
+    }
+
+    private int bfsNextStep(SearchBuffers buffers, int start, int goal) {
+        if (start < 0 || goal < 0)
+            return -1;
+        if (start == goal)
+            return start;
+
+        // reconstruct to get first step after start
+        return bfsSearch(buffers, start, goal) ? firstStep(buffers, start, goal) : -1;
+    }
+
+    // BFS from start until goal is dequeued; true if it was reached.
+    // The path is left in buffers.parent.
+    private boolean bfsSearch(SearchBuffers buffers, int start, int goal) {
+        buffers.begin();
+        int[] offsets = graph.offsets;
+        int[] adjacency = graph.adjacency;
+        int[] queue = buffers.queue;
+        int[] parent = buffers.parent;
+        int[] mark = buffers.mark;
+        int stamp = buffers.stamp;
+        int head = 0, tail = 0;
+
+        queue[tail++] = start;
+        mark[start] = stamp;
+        parent[start] = -1;
+
+        while (head < tail) {
+            int current = queue[head++];
+            if (current == goal)
+                break;
+
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int nb = adjacency[e];
+                if (mark[nb] != stamp) {
+                    mark[nb] = stamp;
+                    parent[nb] = current;
+                    queue[tail++] = nb;
+                }
+            }
+        }
+
+        buffers.lastExpanded = head;
+        if (metrics != null) {
+            metrics.searched(TickMetrics.EXPANDED_BFS, head);
+        }
+        return mark[goal] == stamp;
+    }
+
+    // ===== A* (for Pinky, part of Inky) =====
+
+    int aStarNextStep(int start, int goal) {
+        return aStarNextStep(searches, start, goal);
+    }
+
+    private int aStarNextStep(SearchBuffers buffers, int start, int goal) {
+        if (start < 0 || goal < 0)
+            return -1;
+        if (start == goal)
+            return start;
+
+        return aStarSearch(buffers, start, goal) ? firstStep(buffers, start, goal) : -1;
+    }
+
+    // A* from start until goal is popped; true if it was reached.
+    // The path is left in buffers.parent.
+    private boolean aStarSearch(SearchBuffers buffers, int start, int goal) {
+        // mark == stamp: gScore is valid; closed is marked with -stamp
+        buffers.begin();
+        int[] offsets = graph.offsets;
+        int[] adjacency = graph.adjacency;
+        int[] searchParent = buffers.parent;
+        int[] searchMark = buffers.mark;
+        int[] gScore = buffers.gScore;
+        IntHeap openSet = buffers.openSet;
+        int searchStamp = buffers.stamp;
+        int closedMark = -searchStamp;
+        openSet.clear();
+
+        gScore[start] = 0;
+        searchMark[start] = searchStamp;
+        searchParent[start] = -1;
+        openSet.push(start, graph.heuristic(start, goal));
+        int expanded = 0;
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.pop();
+            if (current == goal)
+                break;
+
+            if (searchMark[current] == closedMark)
+                continue; // stale copy of a node we already expanded
+            searchMark[current] = closedMark;
+            expanded++;
+
+            int currentG = gScore[current];
+
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int nb = adjacency[e];
+                if (searchMark[nb] == closedMark)
+                    continue;
+
+                int tentativeG = currentG + 1; // cost per edge = 1
+                int oldG = searchMark[nb] == searchStamp ? gScore[nb] : Integer.MAX_VALUE;
+
+                if (tentativeG < oldG) {
+                    gScore[nb] = tentativeG;
+                    searchMark[nb] = searchStamp;
+                    searchParent[nb] = current;
+                    // push again with the better score; the old entry is skipped later
+                    openSet.push(nb, tentativeG + graph.heuristic(nb, goal));
+                }
+            }
+        }
+
+        buffers.lastExpanded = expanded;
+        if (metrics != null) {
+            metrics.searched(TickMetrics.EXPANDED_ASTAR, expanded);
+        }
+        return searchMark[goal] == searchStamp || searchMark[goal] == closedMark;
+    }
+
+    // ===== Jump Point Search (any chasing ghost, see searchByGhost) =====
+
+    int jpsNextStep(int start, int goal) {
+        return jpsNextStep(searches, start, goal);
+    }
+
+    private int jpsNextStep(SearchBuffers buffers, int start, int goal) {
+        if (start < 0 || goal < 0)
+            return -1;
+        if (start == goal)
+            return start;
+
+        return jpsSearch(buffers, start, goal) ? buffers.jumpPoints.firstStep(start, goal) : -1;
+    }
+
+    // JPS from start to goal; true if it was reached. The path, as jump points,
+    // is left in buffers.jumpPoints.parent.
+    private boolean jpsSearch(SearchBuffers buffers, int start, int goal) {
+        JumpPointSearch jps = buffers.jumpPointSearch();
+        boolean found = jps.search(start, goal);
+        buffers.lastExpanded = jps.lastExpanded();
+        if (metrics != null) {
+            metrics.searched(TickMetrics.EXPANDED_JPS, jps.lastExpanded());
+        }
+        return found;
+    }
+
+    //==========Hybrid========
+    // Inky's step from ghostNode, searching from scratch
+    int hybridNextStep(int ghostNode) {
+        int aStep = chaseNextStep(searches, ghostNode, getAheadOfPacmanNode(4), inkyField, null, SEARCH_ASTAR);
+        int bStep = chaseNextStep(searches, ghostNode, getNodeForBlock(pacman), pacmanField, null, SEARCH_BFS);
+        return hybridChoice(aStep, bStep);
+    }
+
+    // combo: the A* step toward 4 tiles ahead of Pac-Man 70% of the time it
+    // exists, otherwise the BFS step toward Pac-Man (no draw without an A* step)
+    private int hybridChoice(int aStep, int bStep) {
+        if (aStep >= 0 && random.nextDouble() < 0.7) {
+            return aStep;
+        }
+        return bStep;
+    }
+//===============================================
+
+    //scared nextstep
+    private int scaredNextStep(Block ghost) {
+        if (!isCenteredOnTile(ghost)) return -1;
+
+        int ghostNode = getNodeForBlock(ghost);
+        int pacNode = getNodeForBlock(pacman);
+        if (ghostNode < 0 || pacNode < 0) return -1;
+
+        // Pick the neighbor farthest from Pac-Man
+        int bestNode = -1;
+        int maxDist = -1;
+
+        for (int e = graph.offsets[ghostNode]; e < graph.offsets[ghostNode + 1]; e++) {
+            int nb = graph.adjacency[e];
+            int dist = graph.heuristic(nb, pacNode);
+            if (dist > maxDist) {
+                maxDist = dist;
+                bestNode = nb;
+            }
+        }
+
+        return bestNode;
+    }
+
+    // Reused search buffers, indexed by node id, and the path cache counters of
+    // the searches run with them. The game thread has `searches`; each worker of
+    // the parallel decision phase has its own. Allocated by the first search on
+    // the current graph (with distance fields or a routing table there may never be one).
+    final class SearchBuffers {
+        private MazeGraph graph; // the buffers below are for this graph
+        private int[] queue;
+        private int[] parent;
+        private int[] mark;
+        private int stamp;
+        private int[] gScore;
+        private IntHeap openSet;
+        private JumpPointSearch jumpPoints;
+        private MazeGraph jumpPointsGraph;
+        // nodes the last search expanded (jump points for JPS)
+        int lastExpanded;
+        long pathSearches, pathReuses, pathRepairs; // not yet added to the engine's
+
+        // Each search bumps stamp instead of clearing its arrays;
+        // a node counts as visited when mark[id] == stamp.
+        private void begin() {
+            if (this.graph != GameEngine.this.graph || mark == null) {
+                this.graph = GameEngine.this.graph;
+                int tiles = rowCount * columnCount;
+                queue = new int[graph.nodeCount];
+                parent = new int[tiles];
+                mark = new int[tiles];
+                gScore = new int[tiles];
+                openSet = new IntHeap(64);
+                stamp = 0;
+            }
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(mark, 0);
+                stamp = 1;
+            }
+        }
+
+        private JumpPointSearch jumpPointSearch() {
+            if (jumpPointsGraph != GameEngine.this.graph) {
+                jumpPointsGraph = GameEngine.this.graph;
+                jumpPoints = new JumpPointSearch(jumpPointsGraph);
+            }
+            return jumpPoints;
+        }
+
+        // move the path cache counters into the engine's totals
+        private void addCounters() {
+            GameEngine.this.pathSearches += pathSearches;
+            GameEngine.this.pathReuses += pathReuses;
+            GameEngine.this.pathRepairs += pathRepairs;
+            this.pathSearches = this.pathReuses = this.pathRepairs = 0;
+        }
+    }
+
+    final SearchBuffers searches = new SearchBuffers();
+
+    // nodes the last bfsNextStep / aStarNextStep / jpsNextStep expanded (jump points for JPS)
+    int lastExpanded() {
+        return searches.lastExpanded;
+    }
+    // ========================= GAME LOGIC =========================
+
+    // Advance the game by one tick. input is the direction the player asked for
+    // this tick (U/D/L/R), or '\0' to keep whatever is already queued.
+    public void step(char input) {
+        if (gameOver) {
+            return;
+        }
+        if (input != '\0') {
+            queuedDirection = input;
+        }
+        TickMetrics m = metrics;
+        if (m != null) {
+            m.beginTick();
+        }
+        move();
+        tick++;
+        if (m != null) {
+            m.endTick(tick);
+        }
+    }
+
+    public void move() {
+        entities.rememberPositions();
+
+        TickMetrics m = metrics;
+        long t = m != null ? System.nanoTime() : 0;
+        if (planning && !rollout) {
+            planner().plan();
+            if (m != null) t = m.lap(TickMetrics.PLAN_MCTS, t);
+        }
+        movePacman();
+        if (m != null) t = m.lap(TickMetrics.PACMAN, t);
+        moveGhosts();
+        if (m != null) t = m.lap(TickMetrics.GHOSTS, t);
+        checkFoodCollision();
+        checkPowerFoodCollision();
+        if (m != null) m.lap(TickMetrics.FOOD, t);
+
+        if (foodRemaining == 0 && !rollout) { // a rollout ends here instead
+            loadMap();
+            buildGraph();
+            resetPositions();
+        }
+        updateScaredMode();
+
+        markMoved();
+    }
+
+    private MonteCarloPlanner planner() {
+        if (planner == null)
+            planner = new MonteCarloPlanner(this);
+        return planner;
+    }
+
+    // old and new bounds of every entity that moved this tick (all are one tile)
+    private void markMoved() {
+        Entities e = entities;
+        for (int i = 0; i < e.count; i++) {
+            if (e.x[i] != e.prevX[i] || e.y[i] != e.prevY[i]) {
+                dirty.add(e.prevX[i], e.prevY[i], tileSize, tileSize);
+                dirty.add(e.x[i], e.y[i], tileSize, tileSize);
+            }
+        }
+    }
+
+    private void markTile(int id) {
+        dirty.add((id % columnCount) * tileSize, (id / columnCount) * tileSize, tileSize, tileSize);
+    }
+
+    private void movePacman() {
+        // try to apply queued turn before moving
+        if (queuedDirection != '\0' && queuedDirection != pacman.direction()) {
+            char before = pacman.direction();
+            pacman.updateDirection(queuedDirection);
+
+            // clear queue if the turn actually worked
+            if (pacman.direction() == queuedDirection && before != pacman.direction()) {
+                pacmanFacing = pacman.direction();
+                queuedDirection = '\0';
+            }
+        }
+
+        pacman.advance(1);
+        checkWallCollision(pacman);
+    }
+
+    // Two phases: decide every ghost's next tile (on decisionThreads threads),
+    // then move the ghosts one by one in list order.
+    private void moveGhosts() {
+        TickMetrics m = metrics;
+        // the decisions' snapshot: Pac-Man doesn't move again until the next tick
+        pacmanTarget = getNodeForBlock(pacman);
+        pinkyTarget = getAheadOfPacmanNode(3);
+        inkyTarget = getAheadOfPacmanNode(4);
+        // the ghosts Pac-Man ran into; one that reaches him on its own move is
+        // caught right after that move, in the same tick
+        int caughtCount = ghostsTouching(pacman);
+
+        decideGhosts();
+
+        int nextCaught = 0;
+        for (int i = 0; i < ghosts.size(); i++) {
+            Block ghost = ghosts.get(i);
+            if (nextCaught < caughtCount && caught[nextCaught] == ghost.slot) {
+                nextCaught++;
+                handleGhostCollision(ghost);
+                if (!scared)
+                    break; // a life lost puts everyone back at the start (or ends the game)
+                continue;  // eaten and sent home; the rest still move
+            }
+
+            long start = m != null ? System.nanoTime() : 0;
+            moveGhost(ghost);
+            fileGhost(ghost);
+            if (m != null) {
+                long nanos = System.nanoTime() - start + decisionNanos[ghost.slot];
+                m.ghostMoved(ghost.ghostType(), ghostAlgorithm(ghost), nanos);
+            }
+            if (collision(ghost, pacman)) {
+                handleGhostCollision(ghost);
+                if (!scared)
+                    break;
+            }
+        }
+    }
+
+    // which TickMetrics.ALGO_* section a ghost's move this tick belongs to
+    private int ghostAlgorithm(Block ghost) {
+        if (plannedStep[ghost.slot] != UNPLANNED)
+            return TickMetrics.ALGO_MCTS;
+        if (scared)
+            return TickMetrics.ALGO_SCARED;
+        if (ghost.ghostType() == 'r' || ghost.ghostType() == 'p' || ghost.ghostType() == 'b') {
+            if (hasRoutingTable())
+                return TickMetrics.ALGO_ROUTED;
+            if (useDistanceFields)
+                return TickMetrics.ALGO_FIELD;
+            switch (searchByGhost[ghost.ghostType()]) {
+                case SEARCH_JPS -> { return TickMetrics.ALGO_JPS; }
+                case SEARCH_BFS -> { return TickMetrics.ALGO_BFS; }
+                case SEARCH_ASTAR -> { return useHierarchicalSearch ? TickMetrics.ALGO_HPA : TickMetrics.ALGO_ASTAR; }
+                default -> { }
+            }
+            if (ghost.ghostType() == 'p' && useHierarchicalSearch)
+                return TickMetrics.ALGO_HPA;
+        }
+        return switch (ghost.ghostType()) {
+            case 'r' -> TickMetrics.ALGO_BFS;
+            case 'p' -> TickMetrics.ALGO_ASTAR;
+            case 'b' -> TickMetrics.ALGO_HYBRID;
+            default -> TickMetrics.ALGO_RANDOM;
+        };
+    }
+
+
+    // ===== DECISION PHASE =====
+
+    // Decide every ghost's step for this tick. On one thread, or when HPA* is in
+    // use (its path cache answers depend on query order) or TickMetrics is on
+    // (not thread-safe), in list order on this thread; otherwise split across
+    // the decision pool, after flooding the distance fields as far as the
+    // decisions will read them so that the workers only read shared state.
+    private void decideGhosts() {
+        int count = ghosts.size();
+        if (decisionThreads <= 1 || count < 2 * DECISION_BLOCK || metrics != null || (usesHierarchy() && !scared)) {
+            TickMetrics m = metrics;
+            for (int i = 0; i < ghosts.size(); i++) {
+                Block ghost = ghosts.get(i);
+                long start = m != null ? System.nanoTime() : 0;
+                decide(ghost, searches);
+                if (m != null) {
+                    decisionNanos[ghost.slot] = System.nanoTime() - start;
+                }
+            }
+            searches.addCounters();
+            return;
+        }
+
+        if (!scared && !hasRoutingTable() && useDistanceFields) {
+            floodChaseFields();
+        }
+        if (decisionPool == null || decisionPool.getParallelism() != decisionThreads - 1) {
+            if (decisionPool != null)
+                decisionPool.shutdown();
+            decisionPool = new ForkJoinPool(decisionThreads - 1);
+            decisionTasks = new DecisionTask[decisionThreads];
+            for (int t = 0; t < decisionThreads; t++) {
+                decisionTasks[t] = new DecisionTask();
+            }
+        }
+        nextDecision.set(0);
+        DecisionTask here = decisionTasks[0];
+        for (int t = 1; t < decisionTasks.length; t++) {
+            decisionTasks[t].reinitialize();
+            decisionPool.execute(decisionTasks[t]);
+        }
+        here.reinitialize();
+        here.invoke(); // this thread takes blocks too
+        for (DecisionTask task : decisionTasks) {
+            task.join();
+            task.buffers.addCounters();
+        }
+    }
+
+    // one worker of the decision phase: takes ghosts DECISION_BLOCK at a time
+    // until none are left, searching (if it has to) with its own buffers
+    @SuppressWarnings("serial")
+    private final class DecisionTask extends RecursiveAction {
+        final SearchBuffers buffers = new SearchBuffers();
+
+        @Override
+        protected void compute() {
+            int count = ghosts.size();
+            int from;
+            while ((from = nextDecision.getAndAdd(DECISION_BLOCK)) < count) {
+                int to = Math.min(from + DECISION_BLOCK, count);
+                for (int i = from; i < to; i++) {
+                    decide(ghosts.get(i), buffers);
+                }
+            }
+        }
+    }
+
+    // A field's nextStep is the same however far it has flooded, so flood each
+    // one up to the farthest ghost that will descend it, and the decisions then
+    // only read the fields.
+    private void floodChaseFields() {
+        for (int i = 0; i < ghosts.size(); i++) {
+            Block ghost = ghosts.get(i);
+            if (!isCenteredOnTile(ghost))
+                continue;
+            int node = getNodeForBlock(ghost);
+            if (node < 0)
+                continue;
+            switch (ghost.ghostType()) {
+                case 'r' -> reach(pacmanField, pacmanTarget, node);
+                case 'p' -> reach(pinkyField, pinkyTarget, node);
+                case 'b' -> {
+                    reach(inkyField, inkyTarget, node);
+                    reach(pacmanField, pacmanTarget, node);
+                }
+                default -> { }
+            }
+        }
+    }
+
+    private static void reach(DistanceField field, int target, int node) {
+        if (target >= 0) {
+            field.update(target);
+            field.distance(node);
+        }
+    }
+
+    // The tile a ghost centered on a tile turns toward this tick, into
+    // decidedStep (Inky's BFS step into decidedAltStep); -1 = carry on. Reads the
+    // ghost, the chase targets and the graph, writes only the ghost's own slots
+    // and path caches. No randomness: that is all drawn in the move phase.
+    private void decide(Block ghost, SearchBuffers buffers) {
+        int slot = ghost.slot;
+        decidedStep[slot] = -1;
+        decidedAltStep[slot] = -1;
+        if (!isCenteredOnTile(ghost))
+            return;
+        if (plannedStep[slot] != UNPLANNED) {
+            decidedStep[slot] = plannedStep[slot];
+            return;
+        }
+        if (scared) {
+            decidedStep[slot] = scaredNextStep(ghost);
+            return;
+        }
+
+        int node = getNodeForBlock(ghost);
+        if (node < 0)
+            return;
+        // the chasers' searches can be swapped per type through searchByGhost
+        switch (ghost.ghostType()) {
+            case 'r' -> { // Blinky: BFS to Pac-Man
+                if (pacmanTarget >= 0)
+                    decidedStep[slot] = chaseNextStep(buffers, node, pacmanTarget, pacmanField, ghost.pacmanPath,
+                            searchFor(ghost, SEARCH_BFS));
+            }
+            case 'p' -> { // Pinky: A* to 3 tiles ahead of Pac-Man
+                if (pinkyTarget >= 0)
+                    decidedStep[slot] = chaseNextStep(buffers, node, pinkyTarget, pinkyField, ghost.aheadPath,
+                            searchFor(ghost, SEARCH_ASTAR));
+            }
+            case 'b' -> { // Inky: A* to 4 tiles ahead, or BFS to Pac-Man (see hybridChoice)
+                decidedStep[slot] = chaseNextStep(buffers, node, inkyTarget, inkyField, ghost.aheadPath,
+                        searchFor(ghost, SEARCH_ASTAR));
+                decidedAltStep[slot] = chaseNextStep(buffers, node, pacmanTarget, pacmanField, ghost.pacmanPath,
+                        searchFor(ghost, SEARCH_BFS));
+            }
+            default -> { } // Clyde wanders at random, decided while moving
+        }
+    }
+
+    // ===== MOVE PHASE: Individual Ghosts =====
+
+    private void moveGhost(Block ghost) {
+        int step = decidedStep[ghost.slot];
+        if (scared) {
+            moveScaredGhost(ghost, step);
+            return;
+        }
+        if (plannedStep[ghost.slot] != UNPLANNED) {
+            chase(ghost, step);
+            return;
+        }
+        switch (ghost.ghostType()) {
+            case 'r', 'p' -> chase(ghost, step);
+            case 'b' -> chase(ghost, hybridChoice(step, decidedAltStep[ghost.slot]));
+            case 'o' -> moveOrangeGhost(ghost);
+            default -> moveGenericGhost(ghost);
+        }
+    }
+
+    private void moveScaredGhost(Block ghost, int next) {
+        if (!isCenteredOnTile(ghost)) {
+            moveGenericGhost(ghost);
+            return;
+        }
+        if (next < 0)
+            return; // nowhere to run: stay put
+        turnToward(ghost, getNodeForBlock(ghost), next);
+        moveGenericGhost(ghost);
+    }
+
+    // turn toward next (decided this tick, -1 = none), then carry on
+    private void chase(Block ghost, int next) {
+        if (next >= 0) {
+            int node = getNodeForBlock(ghost);
+            if (next != node)
+                turnToward(ghost, node, next);
+        }
+        moveGenericGhost(ghost);
+    }
+
+    private void turnToward(Block ghost, int node, int next) {
+        int dr = graph.row(next) - graph.row(node);
+        int dc = graph.col(next) - graph.col(node);
+
+        if (dr == -1 && dc == 0) ghost.updateDirection('U');
+        else if (dr == 1 && dc == 0) ghost.updateDirection('D');
+        else if (dr == 0 && dc == -1) ghost.updateDirection('L');
+        else if (dr == 0 && dc == 1) ghost.updateDirection('R');
+    }
+
+    // Clyde - random-ish wandering (default / random behavior)
+    private void moveOrangeGhost(Block ghost) {
+        // occasionally pick a random new direction when centered
+        if (isCenteredOnTile(ghost) && random.nextInt(10) == 0) {
+            char newDir = directions[random.nextInt(directions.length)];
+            ghost.updateDirection(newDir);
+        }
+        ghost.advance(1);
+        checkWallCollision(ghost);
+    }
+
+    private void moveGenericGhost(Block ghost) {
+        ghost.advance(1);
+        checkWallCollision(ghost);
+    }
+
+    //gpt helped define tunnel logic
+    void checkWallCollision(Block block) {
+        // Tunnel wrap: teleport to opposite side
+        int row = Math.floorDiv(block.y(), tileSize);
+        if (row >= 0 && row < rowCount && tunnelRows[row]) {
+            if (block.x() + block.width < 0) {          // exited left
+                block.moveTo(boardWidth, block.y());
+            } else if (block.x() > boardWidth) {       // exited right
+                block.moveTo(-block.width, block.y());
+            }
+        }
+        int column = Math.floorDiv(block.x(), tileSize);
+        if (column >= 0 && column < columnCount && tunnelColumns[column]) {
+            if (block.y() + block.height < 0) {         // exited top
+                block.moveTo(block.x(), boardHeight);
+            } else if (block.y() > boardHeight) {      // exited bottom
+                block.moveTo(block.x(), -block.height);
+            }
+        }
+
+        // Normal wall collision; off the board is a wall except through a tunnel
+        if (hitsWall(block)) {
+
+            // revert movement
+            block.advance(-1);
+
+            if (block != pacman) {
+                // random new direction for ghosts on collision
+                char newDirection = directions[random.nextInt(4)];
+                block.updateDirection(newDirection);
+            }
+        }
+    }
+
+    // Off-board tiles are walls, except beyond the ends of a tunnel row or column.
+    boolean isWallTile(int r, int c) {
+        boolean rowOnBoard = r >= 0 && r < rowCount;
+        boolean columnOnBoard = c >= 0 && c < columnCount;
+        if (rowOnBoard && columnOnBoard)
+            return testBit(wallGrid, r * columnCount + c);
+        if (rowOnBoard)
+            return !tunnelRows[r];
+        if (columnOnBoard)
+            return !tunnelColumns[c];
+        return true;
+    }
+
+    // True if the block overlaps a wall tile. Only the 1 to 4 tiles under the block
+    // are looked at, so the cost doesn't depend on how many walls the maze has.
+    private boolean hitsWall(Block b) {
+        int x = b.x(), y = b.y();
+        int c0 = Math.floorDiv(x, tileSize);
+        int c1 = Math.floorDiv(x + b.width - 1, tileSize);
+        int r0 = Math.floorDiv(y, tileSize);
+        int r1 = Math.floorDiv(y + b.height - 1, tileSize);
+
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                if (isWallTile(r, c))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+
+    private void handleGhostCollision(Block ghost) {
+        if (!scared){
+            lives--;
+            killsByGhost[ghost.ghostType()]++;
+            if (lives <= 0) {
+                gameOver = true;
+            } else {
+                resetPositions();
+            }
+        }
+        else{
+            score += 500;
+            ghostsEaten++;
+            returnGhostHome(ghost);
+
+        }
+
+    }
+
+    private void returnGhostHome(Block ghost) {
+        ghost.reset();
+        entities.direction[ghost.id] = 'U';      // or any default
+        fileGhost(ghost);
+    }
+
+    // ===== CONTACT =====
+
+    private void fileGhost(Block ghost) {
+        ghostTiles.put(ghost.slot, Math.floorDiv(ghost.y(), tileSize), Math.floorDiv(ghost.x(), tileSize));
+    }
+
+    // after anything that moves ghosts other than moveGhosts()
+    private void fileGhosts() {
+        for (int i = 0; i < ghosts.size(); i++) {
+            Block ghost = ghosts.get(i);
+            fileGhost(ghost);
+        }
+    }
+
+    // Slots of the ghosts overlapping b, in ghosts order, into caught[];
+    // returns how many. Only ghosts filed within one tile of b's tile can overlap it.
+    int ghostsTouching(Block b) {
+        int row = Math.floorDiv(b.y(), tileSize), col = Math.floorDiv(b.x(), tileSize);
+        int count = 0;
+        for (int r = row - 1; r <= row + 1; r++) {
+            for (int c = col - 1; c <= col + 1; c++) {
+                for (int i = ghostTiles.first(r, c); i >= 0; i = ghostTiles.next(i)) {
+                    if (collision(ghosts.get(i), b)) {
+                        int at = count++;
+                        for (; at > 0 && caught[at - 1] > i; at--) {
+                            caught[at] = caught[at - 1]; // insertion sort, there are only a few
+                        }
+                        caught[at] = i;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // Pairs of ghosts overlapping each other right now. Ghosts pass through each
+    // other as in the arcade game; this is for crowd statistics. Each ghost only
+    // looks at its 3x3 tiles, so a crowd costs O(ghosts), not O(ghosts^2).
+    int ghostContacts() {
+        int pairs = 0;
+        for (Block ghost : ghosts) {
+            int row = Math.floorDiv(ghost.y(), tileSize), col = Math.floorDiv(ghost.x(), tileSize);
+            for (int r = row - 1; r <= row + 1; r++) {
+                for (int c = col - 1; c <= col + 1; c++) {
+                    for (int i = ghostTiles.first(r, c); i >= 0; i = ghostTiles.next(i)) {
+                        if (i > ghost.slot && collision(ghosts.get(i), ghost))
+                            pairs++;
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+
+    // tile under Pac-Man's center, -1 while he is off the board in the tunnel
+    int pacmanTile() {
+        int c = Math.floorDiv(pacman.x() + pacman.width / 2, tileSize);
+        int r = Math.floorDiv(pacman.y() + pacman.height / 2, tileSize);
+        if (r < 0 || r >= rowCount || c < 0 || c >= columnCount)
+            return -1;
+        return r * columnCount + c;
+    }
+
+    private void checkFoodCollision() {
+        int tile = pacmanTile();
+        if (tile >= 0 && clearBit(foodGrid, tile)) {
+            score += 10;
+            foodRemaining--;
+            markTile(tile);
+        }
+    }
+
+    private void checkPowerFoodCollision() {
+        int tile = pacmanTile();
+        if (tile >= 0 && clearBit(powerGrid, tile)) {
+            score += 100;
+            foodRemaining--;
+            if (!scared) {
+                dirty.markFull(); // every ghost sprite changes
+            }
+            scared = true;
+            scaredTicksLeft = SCARED_TICKS;
+        }
+    }
+
+    private void updateScaredMode() {
+        if (scared && --scaredTicksLeft <= 0) {
+            scared = false;
+            dirty.markFull();
+        }
+    }
+
+
+    public boolean collision(Block a, Block b) {
+        int ax = a.x(), ay = a.y(), bx = b.x(), by = b.y();
+        return ax < bx + b.width &&
+                ax + a.width > bx &&
+                ay < by + b.height &&
+                ay + a.height > by;
+    }
+
+    public void resetPositions() {
+        dirty.markFull();
+        entities.reset(0, entities.count);
+        queuedDirection = '\0';
+
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghosts.get(i).updateDirection(directions[random.nextInt(4)]);
+        }
+        fileGhosts();
+    }
+
+    // Start over from a fresh map with full lives and no score. The new game's
+    // seed is drawn from the old game's RNG, so a session is still reproducible.
+    public void restart() {
+        startGame(random.nextLong());
+    }
+
+    // Start over with a specific seed (replays, batch runs).
+    public void restart(long seed) {
+        startGame(seed);
+    }
+
+    // ===== SNAPSHOTS =====
+
+    // a new snapshot of the game as it stands, see GameSnapshot
+    GameSnapshot snapshot() {
+        GameSnapshot s = new GameSnapshot();
+        saveTo(s);
+        return s;
+    }
+
+    // Copy the game's state into s. Allocates only the first time s is used for
+    // this level size.
+    void saveTo(GameSnapshot s) {
+        if (s.foodGrid.length != foodGrid.length) {
+            s.foodGrid = new long[foodGrid.length];
+            s.powerGrid = new long[powerGrid.length];
+        }
+        if (s.ghostPaths.length != 2 * ghosts.size()) {
+            s.ghostPaths = new PathCache[2 * ghosts.size()];
+            for (int i = 0; i < s.ghostPaths.length; i++) {
+                s.ghostPaths[i] = new PathCache();
+            }
+        }
+        s.entities.copyFrom(entities);
+        System.arraycopy(foodGrid, 0, s.foodGrid, 0, foodGrid.length);
+        System.arraycopy(powerGrid, 0, s.powerGrid, 0, powerGrid.length);
+        System.arraycopy(killsByGhost, 0, s.killsByGhost, 0, killsByGhost.length);
+        s.randomState = random.getState();
+        s.tick = tick;
+        s.score = score;
+        s.lives = lives;
+        s.ghostsEaten = ghostsEaten;
+        s.gameOver = gameOver;
+        s.scared = scared;
+        s.scaredTicksLeft = scaredTicksLeft;
+        s.foodRemaining = foodRemaining;
+        s.queuedDirection = queuedDirection;
+        s.pacmanFacing = pacmanFacing;
+
+        for (int i = 0; i < ghosts.size(); i++) {
+            Block ghost = ghosts.get(i);
+            s.ghostPaths[2 * i].copyFrom(ghost.pacmanPath);
+            s.ghostPaths[2 * i + 1].copyFrom(ghost.aheadPath);
+        }
+        s.mapVersion = mapVersion;
+        if (hierarchy != null) {
+            hierarchy.saveCache(s.hierarchyCache);
+        } else {
+            s.hierarchyCache.clear(); // as a hierarchy built later starts out
+        }
+    }
+
+    // Put the game back in the state s was saved in, on this engine or on one
+    // playing the same map.
+    void restore(GameSnapshot s) {
+        if (s.entities.count != entities.count || s.foodGrid.length != foodGrid.length
+                || s.ghostPaths.length != 2 * ghosts.size())
+            throw new IllegalArgumentException("snapshot of a different level");
+        entities.copyFrom(s.entities);
+        System.arraycopy(s.foodGrid, 0, foodGrid, 0, foodGrid.length);
+        System.arraycopy(s.powerGrid, 0, powerGrid, 0, powerGrid.length);
+        System.arraycopy(s.killsByGhost, 0, killsByGhost, 0, killsByGhost.length);
+        random.setState(s.randomState);
+        tick = s.tick;
+        score = s.score;
+        lives = s.lives;
+        ghostsEaten = s.ghostsEaten;
+        gameOver = s.gameOver;
+        scared = s.scared;
+        scaredTicksLeft = s.scaredTicksLeft;
+        foodRemaining = s.foodRemaining;
+        queuedDirection = s.queuedDirection;
+        pacmanFacing = s.pacmanFacing;
+
+        for (int i = 0; i < ghosts.size(); i++) {
+            Block ghost = ghosts.get(i);
+            restorePath(ghost.pacmanPath, s.ghostPaths[2 * i], s.mapVersion);
+            restorePath(ghost.aheadPath, s.ghostPaths[2 * i + 1], s.mapVersion);
+        }
+        if (hierarchy != null) {
+            hierarchy.restoreCache(s.hierarchyCache);
+        }
+        fileGhosts();
+        dirty.markFull();
+    }
+
+    // A saved path is good on this engine if it was good when saved: its map
+    // version is renumbered to this engine's, which counts maps on its own.
+    private void restorePath(PathCache path, PathCache saved, int savedVersion) {
+        path.copyFrom(saved);
+        path.mapVersion = saved.mapVersion == savedVersion ? mapVersion : -1;
+    }
+
+    // Hash of everything that decides how the game continues. Two runs that
+    // agree on this after every tick played the same game.
+    long stateHash() {
+        long h = random.getState();
+        h = h * 31 + tick;
+        h = h * 31 + score;
+        h = h * 31 + lives;
+        h = h * 31 + scaredTicksLeft;
+        h = h * 31 + queuedDirection;
+        h = h * 31 + foodRemaining;
+        h = h * 31 + Arrays.hashCode(foodGrid);
+        h = h * 31 + Arrays.hashCode(powerGrid);
+        Entities e = entities; // Pac-Man, then the ghosts in order
+        for (int i = 0; i < e.count; i++) {
+            h = h * 31 + e.x[i];
+            h = h * 31 + e.y[i];
+            h = h * 31 + e.direction[i];
+        }
+        return h;
+    }
+
+    // Headless smoke run: advance a game with random input and report ticks per second.
+    //   java GameEngine [ticks] [--map=<name or file.pmap>] [--distance-fields | --hierarchical | --live-search [--no-path-cache]]
+    //                   [--search=<type>:<bfs|astar|jps|mcts>,...] [--threads=N]
+    //                   [--mcts-budget=<ms>] [--mcts-rollouts=N] [--mcts-threads=N] [--metrics]
+    // The checks that the engine plays right are the tests in game/src/test/java: mvn test.
+    public static void main(String[] args) throws java.io.IOException {
+        int ticks = 1_000_000;
+        String map = "stock";
+        for (String arg : args) {
+            if (arg.startsWith("--map=")) {
+                map = arg.substring("--map=".length()); // see TileMaps.byName
+            }
+        }
+        long loadStart = System.nanoTime();
+        GameEngine engine = map.endsWith(".pmap")
+                ? new GameEngine(BinaryMap.open(java.nio.file.Path.of(map)), System.nanoTime())
+                : new GameEngine(TileMaps.byName(map));
+        System.out.printf("%s: %dx%d, %d walkable tiles, %d ghosts, loaded in %.0f ms%n", map, engine.rowCount,
+                engine.columnCount, engine.graph.nodeCount, engine.ghosts.size(), (System.nanoTime() - loadStart) / 1e6);
+        for (String arg : args) {
+            if (arg.startsWith("--map="))
+                continue;
+            switch (arg) {
+                case "--distance-fields" -> engine.useRoutingTable = false;
+                case "--hierarchical" -> {
+                    engine.useRoutingTable = false;
+                    engine.useDistanceFields = false;
+                }
+                case "--live-search" -> {
+                    engine.useRoutingTable = false;
+                    engine.useDistanceFields = false;
+                    engine.useHierarchicalSearch = false;
+                }
+                case "--no-path-cache" -> engine.usePathCache = false;
+                case "--metrics" -> engine.metrics = new TickMetrics();
+                default -> {
+                    if (arg.startsWith("--threads=")) {
+                        engine.decisionThreads = Integer.parseInt(arg.substring("--threads=".length()));
+                    } else if (arg.startsWith("--search=")) {
+                        engine.chooseSearches(arg.substring("--search=".length()));
+                    } else if (arg.startsWith("--mcts-budget=")) {
+                        engine.plannerBudgetNanos = (long) (Double.parseDouble(arg.substring("--mcts-budget=".length())) * 1e6);
+                    } else if (arg.startsWith("--mcts-rollouts=")) {
+                        engine.plannerRollouts = Integer.parseInt(arg.substring("--mcts-rollouts=".length()));
+                    } else if (arg.startsWith("--mcts-threads=")) {
+                        engine.plannerThreads = Integer.parseInt(arg.substring("--mcts-threads=".length()));
+                    } else {
+                        ticks = Integer.parseInt(arg);
+                    }
+                }
+            }
+        }
+        engine.prepareHierarchy(); // with --hierarchical, before the clock starts
+        Random input = new Random();
+        char[] keys = { 'U', 'D', 'L', 'R', '\0' };
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            if (engine.gameOver) {
+                engine.restart();
+            }
+            engine.step(keys[input.nextInt(keys.length)]);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d ticks in %.2fs (%.0f ticks/s)%n", ticks, seconds, ticks / seconds);
+        if (engine.ghosts.size() > 4) {
+            System.out.printf("ghosts overlapping each other at the end: %d pairs%n", engine.ghostContacts());
+        }
+        if (engine.pathSearches > 0) {
+            long avoided = engine.pathReuses + engine.pathRepairs;
+            System.out.printf("ghost searches: %d run, %d avoided (%d path reused, %d repaired), %.0f%% avoided%n",
+                    engine.pathSearches, avoided, engine.pathReuses, engine.pathRepairs,
+                    100.0 * avoided / (engine.pathSearches + avoided));
+        }
+        if (engine.metrics != null) {
+            System.out.print(engine.metrics.report());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Small seeded RNG for the engine (SplitMix64). Unlike java.util.Random its whole
+ * state is one long that can be read and written, so a game can be reproduced
+ * from its seed and snapshotted mid-game.
+ */
+public class GameRandom {
+
+    private long state;
+
+    GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // uniform in [0, bound)
+    int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    // uniform in [0, 1)
+    double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state;
+    }
+}
@@ -0,0 +1,350 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+
+/*
+ * Draws a GameEngine: the cached maze layer, pellets, sprites and the score line.
+ * Shared by the Swing panel (PacMan) and the active-rendering canvas (ActiveGame),
+ * so the two modes look the same.
+ */
+public class GameRenderer {
+
+    private final GameEngine game;
+    private final Component target; // where the graphics configuration comes from, may be null
+
+    private final int tileSize;
+    private final int boardWidth;
+    private final int boardHeight;
+
+    private Image wallImage;
+    private Image blueGhostImage;
+    private Image orangeGhostImage;
+    private Image pinkGhostImage;
+    private Image redGhostImage;
+    private Image scaredGhostImage;
+
+    private Image pacmanUpImage;
+    private Image pacmanDownImage;
+    private Image pacmanLeftImage;
+    private Image pacmanRightImage;
+
+    private Image powerFoodImage;
+
+    // The sprites above are scaled to tileSize when loaded, so each frame draws
+    // them with an unscaled drawImage: a plain blit. A scaling drawImage builds
+    // a transform per call, which is garbage every frame for every sprite.
+
+    // Nothing below allocates in a frame: the clip is read into a reused
+    // rectangle and the score line is written into a reused char[] when it changes.
+    private static final Font SCORE_FONT = new Font("Arial", Font.PLAIN, 18);
+    private final Rectangle clip = new Rectangle();
+    private final char[] scoreText = new char[64];
+    private int scoreTextLength;
+    private int scoreTextScore = -1;
+    private int scoreTextLives = -1;
+    private boolean scoreTextGameOver;
+
+    // walls never change after loadMap(), so they are pre-rendered once into this
+    // layer and rebuilt only when the engine loads a map (a new mapVersion).
+    // A rebuild draws into the same image through the same Graphics, so a restart
+    // allocates nothing here either. Boards bigger than MAX_LAYER_PIXELS get no
+    // layer: their walls are drawn from the wall grid each frame, only for the
+    // tiles inside the clip.
+    static final long MAX_LAYER_PIXELS = 4096L * 4096;
+    private BufferedImage mazeLayer;
+    private Graphics2D mazeLayerGraphics;
+    private Image wallTile; // wallImage pre-scaled to tileSize, blitted per wall
+    private int mazeLayerVersion = -1;
+
+    // draws the engine's TickMetrics over the board when it has any
+    boolean showMetrics = false;
+
+    GameRenderer(GameEngine game, Component target) {
+        this.game = game;
+        this.target = target;
+        this.tileSize = game.tileSize;
+        this.boardWidth = game.boardWidth;
+        this.boardHeight = game.boardHeight;
+        loadImages();
+    }
+
+    private void loadImages() {
+        wallImage = new ImageIcon(getClass().getResource("wall.png")).getImage();
+        blueGhostImage = sprite("blueGhost.png");
+        orangeGhostImage = sprite("orangeGhost.png");
+        pinkGhostImage = sprite("pinkGhost.png");
+        redGhostImage = sprite("redGhost.png");
+        scaredGhostImage = sprite("scaredGhost.png");
+
+        pacmanUpImage = sprite("pacmanUp.png");
+        pacmanDownImage = sprite("pacmanDown.png");
+        pacmanLeftImage = sprite("pacmanLeft.png");
+        pacmanRightImage = sprite("pacmanRight.png");
+
+        powerFoodImage = new ImageIcon(getClass().getResource("powerFood.png")).getImage();
+    }
+
+    // a one-tile sprite, scaled once into a translucent image of its own
+    private Image sprite(String name) {
+        Image source = new ImageIcon(getClass().getResource(name)).getImage();
+        BufferedImage scaled = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, tileSize, tileSize, null);
+        g.dispose();
+        return scaled;
+    }
+
+    public void draw(Graphics g) {
+        draw(g, 1.0);
+    }
+
+    // alpha in [0, 1] places the sprites between their position at the start of
+    // the last tick and their current one, for renderers that run between ticks
+    public void draw(Graphics g, double alpha) {
+        TickMetrics metrics = game.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        // no clip (an offscreen image): the whole board
+        clip.setBounds(0, 0, boardWidth, boardHeight);
+        g.getClipBounds(clip);
+
+        drawWalls(g); // static layer first, dynamic sprites on top
+        drawPacman(g, alpha);
+        drawGhosts(g, alpha);
+        drawFoods(g);
+        drawScore(g);
+
+        if (metrics != null) {
+            metrics.drawn(System.nanoTime() - start);
+            if (showMetrics) {
+                drawMetrics(g, metrics);
+            }
+        }
+    }
+
+    // The sections that matter while playing, in a translucent box at the bottom
+    // left. Debug only: formatting the lines allocates, and it is not timed.
+    private void drawMetrics(Graphics g, TickMetrics metrics) {
+        int[] sections = { TickMetrics.TICK, TickMetrics.PACMAN, TickMetrics.GHOSTS, TickMetrics.FOOD,
+                TickMetrics.DRAW, TickMetrics.EXPANDED_BFS, TickMetrics.EXPANDED_ASTAR, TickMetrics.EXPANDED_FIELD,
+                TickMetrics.ALLOCATED };
+        int lineHeight = 14;
+        int height = (sections.length + 2) * lineHeight + 8;
+        int top = boardHeight - height;
+
+        g.setColor(new Color(0, 0, 0, 190));
+        g.fillRect(0, top, boardWidth, height);
+        g.setColor(Color.GREEN);
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        int y = top + lineHeight;
+        g.drawString(String.format("%-14s %10s %9s %9s %9s %9s", "section", "count", "mean", "p50", "p99", "max"), 4, y);
+        for (int section : sections) {
+            y += lineHeight;
+            g.drawString(metrics.summary(section), 4, y);
+        }
+        y += lineHeight;
+        g.drawString(String.format("late ticks %d, dropped ticks %d", metrics.lateTicks, metrics.droppedTicks), 4, y);
+    }
+
+    private void drawPacman(Graphics g, double alpha) {
+        GameEngine.Block pacman = game.pacman;
+        g.drawImage(pacmanImage(), lerp(pacman.prevX(), pacman.x(), alpha), lerp(pacman.prevY(), pacman.y(), alpha), null);
+    }
+
+    private void drawGhosts(Graphics g, double alpha) {
+        // a crowd on a big board is mostly off screen: skip what the clip can't show
+        Entities e = game.entities; // the ghosts are every entity after Pac-Man
+        for (int i = Entities.PACMAN + 1; i < e.count; i++) {
+            int x = lerp(e.prevX[i], e.x[i], alpha), y = lerp(e.prevY[i], e.y[i], alpha);
+            if (x >= clip.x + clip.width || x + tileSize <= clip.x
+                    || y >= clip.y + clip.height || y + tileSize <= clip.y)
+                continue;
+            g.drawImage(ghostImage(e.type[i]), x, y, null);
+        }
+    }
+
+    // jumps bigger than a tile (tunnel wrap, reset) are drawn at the new spot
+    private int lerp(int prev, int current, double alpha) {
+        if (alpha >= 1.0 || Math.abs(current - prev) > tileSize)
+            return current;
+        return prev + (int) Math.round((current - prev) * alpha);
+    }
+
+    private void drawWalls(Graphics g) {
+        if ((long) boardWidth * boardHeight > MAX_LAYER_PIXELS) {
+            drawVisibleWalls(g);
+            return;
+        }
+        if (mazeLayerVersion != game.mapVersion) {
+            renderMazeLayer();
+            mazeLayerVersion = game.mapVersion;
+        }
+        g.drawImage(mazeLayer, 0, 0, null);
+    }
+
+    // One blit per wall, done once per map load. A compatible image matches the
+    // screen format, so Java2D can keep it cached in video memory for the blit.
+    private void renderMazeLayer() {
+        if (mazeLayer == null) {
+            mazeLayer = compatibleImage(boardWidth, boardHeight);
+            mazeLayerGraphics = mazeLayer.createGraphics();
+        }
+        Graphics2D g = mazeLayerGraphics;
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, boardWidth, boardHeight);
+
+        Image tile = wallTile();
+        long[] walls = game.wallGrid;
+        int columnCount = game.columnCount;
+        for (int w = 0; w < walls.length; w++) {
+            long bits = walls[w];
+            while (bits != 0) {
+                int id = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                g.drawImage(tile, (id % columnCount) * tileSize, (id / columnCount) * tileSize, null);
+            }
+        }
+    }
+
+    private Image wallTile() {
+        if (wallTile == null) {
+            wallTile = compatibleImage(tileSize, tileSize);
+            Graphics tile = wallTile.getGraphics();
+            tile.drawImage(wallImage, 0, 0, tileSize, tileSize, null);
+            tile.dispose();
+        }
+        return wallTile;
+    }
+
+    private BufferedImage compatibleImage(int width, int height) {
+        GraphicsConfiguration gc = target != null ? target.getGraphicsConfiguration() : null;
+        return gc != null
+                ? gc.createCompatibleImage(width, height)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB); // offscreen / headless
+    }
+
+    private void drawVisibleWalls(Graphics g) {
+        int firstRow = Math.max(0, clip.y / tileSize);
+        int lastRow = Math.min(game.rowCount - 1, (clip.y + clip.height - 1) / tileSize);
+        int firstColumn = Math.max(0, clip.x / tileSize);
+        int lastColumn = Math.min(game.columnCount - 1, (clip.x + clip.width - 1) / tileSize);
+
+        Image tile = wallTile();
+        long[] walls = game.wallGrid;
+        int columnCount = game.columnCount;
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                if (GameEngine.testBit(walls, r * columnCount + c))
+                    g.drawImage(tile, c * tileSize, r * tileSize, null);
+            }
+        }
+    }
+
+    private void drawFoods(Graphics g) {
+        g.setColor(Color.WHITE);
+
+        // only the tiles inside the repaint clip need to be walked
+        int firstRow = Math.max(0, clip.y / tileSize);
+        int lastRow = Math.min(game.rowCount - 1, (clip.y + clip.height - 1) / tileSize);
+        int firstColumn = Math.max(0, clip.x / tileSize);
+        int lastColumn = Math.min(game.columnCount - 1, (clip.x + clip.width - 1) / tileSize);
+        if (firstRow > lastRow || firstColumn > lastColumn)
+            return;
+
+        drawFoodLayer(g, game.foodGrid, firstRow, lastRow, firstColumn, lastColumn, 14, 4);
+        drawFoodLayer(g, game.powerGrid, firstRow, lastRow, firstColumn, lastColumn, 8, 16);
+    }
+
+    // walk the set bits of one food layer, row by row within the column range,
+    // and draw a centered square per pellet
+    private void drawFoodLayer(Graphics g, long[] layer, int firstRow, int lastRow, int firstColumn, int lastColumn,
+            int inset, int size) {
+        int columnCount = game.columnCount;
+        for (int r = firstRow; r <= lastRow; r++) {
+            int firstId = r * columnCount + firstColumn;
+            int lastId = r * columnCount + lastColumn;
+            for (int w = firstId >>> 6; w <= lastId >>> 6; w++) {
+                long bits = layer[w];
+                if (w == firstId >>> 6)
+                    bits &= -1L << firstId; // shift counts are mod 64
+                if (w == lastId >>> 6)
+                    bits &= -1L >>> (63 - (lastId & 63));
+                while (bits != 0) {
+                    int id = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int x = (id % columnCount) * tileSize;
+                    int y = r * tileSize;
+                    g.fillRect(x + inset, y + inset, size, size);
+                }
+            }
+        }
+    }
+
+    private void drawScore(Graphics g) {
+        if (scoreTextLength == 0 || game.score != scoreTextScore || game.lives != scoreTextLives
+                || game.gameOver != scoreTextGameOver) {
+            scoreTextLength = 0;
+            if (game.gameOver) {
+                appendScoreText("Game Over: ");
+                appendScoreText(game.score);
+                appendScoreText("  (seed ");
+                appendScoreText(game.seed);
+                appendScoreText(")");
+            } else {
+                appendScoreText("x");
+                appendScoreText(game.lives);
+                appendScoreText("  Score: ");
+                appendScoreText(game.score);
+            }
+            scoreTextScore = game.score;
+            scoreTextLives = game.lives;
+            scoreTextGameOver = game.gameOver;
+        }
+        g.setFont(SCORE_FONT);
+        g.drawChars(scoreText, 0, scoreTextLength, tileSize / 2, tileSize / 2);
+    }
+
+    private void appendScoreText(String text) {
+        text.getChars(0, text.length(), scoreText, scoreTextLength);
+        scoreTextLength += text.length();
+    }
+
+    // decimal digits of n without Long.toString's String; counted on the
+    // negative side, which also holds Long.MIN_VALUE (a seed can be any long)
+    private void appendScoreText(long n) {
+        if (n < 0) {
+            scoreText[scoreTextLength++] = '-';
+        } else {
+            n = -n;
+        }
+        int digits = 1;
+        for (long rest = n / 10; rest < 0; rest /= 10)
+            digits++;
+        for (int i = scoreTextLength + digits - 1; i >= scoreTextLength; i--, n /= 10)
+            scoreText[i] = (char) ('0' - n % 10);
+        scoreTextLength += digits;
+    }
+
+    private Image ghostImage(char ghostType) {
+        if (game.scared) {
+            return scaredGhostImage;
+        }
+        return switch (ghostType) {
+            case 'r' -> redGhostImage;    // Blinky
+            case 'p' -> pinkGhostImage;   // Pinky
+            case 'b' -> blueGhostImage;   // Inky
+            default -> orangeGhostImage;  // Clyde
+        };
+    }
+
+    private Image pacmanImage() {
+        return switch (game.pacmanFacing) {
+            case 'U' -> pacmanUpImage;
+            case 'D' -> pacmanDownImage;
+            case 'L' -> pacmanLeftImage;
+            default -> pacmanRightImage;
+        };
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Everything that decides how a game continues, in flat arrays and plain
+ * fields, so look-ahead AI can play a future and come back to the present:
+ *
+ *   GameSnapshot now = new GameSnapshot();
+ *   engine.saveTo(now);
+ *   for (...) { engine.step(...); ...; engine.restore(now); }
+ *
+ * A snapshot is meant to be reused. Saving into one that already fits the level
+ * and restoring from it allocate nothing, and both are a handful of arraycopy
+ * calls: the entity arrays, the food bitsets, the kill counts and the paths the
+ * searches have cached.
+ *
+ * What follows from the maze alone is not in it: the graph, the routing table,
+ * the distance fields and the hierarchy itself. Every level of a game is the
+ * same maze, so these hold for any snapshot of the same engine. Per-tick
+ * scratch (decisions, search buffers) is not in it either, and the ghost
+ * spatial hash is refiled on restore. The cached paths are, because they break
+ * ties between equally short paths: each ghost's live-search paths and HPA*'s
+ * abstract path cache. So a restored game replays tick for tick whatever the
+ * chase.
+ */
+public class GameSnapshot {
+
+    final Entities entities = new Entities(8);
+    long[] foodGrid = new long[0];
+    long[] powerGrid = new long[0];
+    final int[] killsByGhost = new int[128];
+    PathCache[] ghostPaths = new PathCache[0]; // per ghost: toward Pac-Man, toward the look-ahead tile
+    int mapVersion; // the paths planned on this map are still good
+    final HierarchicalGraph.SavedCache hierarchyCache = new HierarchicalGraph.SavedCache();
+
+    long randomState;
+    long tick;
+    int score;
+    int lives;
+    int ghostsEaten;
+    boolean gameOver;
+    boolean scared;
+    int scaredTicksLeft;
+    int foodRemaining;
+    char queuedDirection;
+    char pacmanFacing;
+}
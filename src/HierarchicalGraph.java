@@ -0,0 +1,681 @@
+import java.util.Arrays;
+
+/*
+ * HPA* (hierarchical path-finding A*) over a MazeGraph, for mazes too big for
+ * the routing table and for flat A* to answer in microseconds.
+ *
+ * The board is cut into square clusters of clusterSize tiles. Wherever a run of
+ * walkable tiles crosses the border between two clusters there is a transition:
+ * one abstract node on each side, joined by an edge of cost 1 (runs shorter than
+ * 6 tiles get one transition in the middle, longer runs one at each end). Inside
+ * each cluster the exact distance between every pair of its abstract nodes is
+ * precomputed by a BFS that stays inside the cluster.
+ *
+ * A query floods start's cluster and goal's cluster locally, runs A* over the
+ * abstract graph between them, and refines only the first leg back to tiles,
+ * since a ghost asks again at its next tile anyway. Paths are near-optimal, not
+ * optimal: they only cross cluster borders at transitions.
+ *
+ * Manhattan distance is a weak A* heuristic in a maze, so the abstract search
+ * also uses landmarks (ALT): exact abstract distances from a few far-apart nodes,
+ * which by the triangle inequality bound the distance to the goal from below.
+ *
+ * Ghosts ask again at every tile with start and goal barely moved, so the last
+ * abstract path toward each of a few goal clusters is kept. While one of its
+ * nodes is reachable inside start's cluster and its end still reaches the goal,
+ * a query just heads for the furthest such node: two local floods, no search.
+ *
+ * When the map changes, update() diffs the walkable bitmaps and rebuilds only
+ * the borders of the clusters that changed and the clusters next to them; the
+ * landmark distances, which span the whole graph, are then recomputed.
+ */
+public class HierarchicalGraph {
+
+    static final int DEFAULT_CLUSTER_SIZE = 16;
+    private static final int LONG_RUN = 6; // runs this long get a transition at each end
+    static final int LANDMARKS = 8;
+
+    final int clusterSize;
+    final int clusterRows;
+    final int clusterCols;
+    private MazeGraph graph;
+
+    // ===== ABSTRACT NODES (slots of removed nodes stay dead until a full rebuild) =====
+    private int nodeSlots = 0;
+    private int liveNodes = 0;
+    private int[] nodeTile = new int[64];
+    private int[] nodeCluster = new int[64]; // -1 = dead
+    private int[] nodeLocal = new int[64];   // index in clusterNodes[cluster]
+    private int[] nodePair = new int[64];    // abstract node across the border
+
+    // transitions on the east / south border of each cluster, as node pairs (this side, other side)
+    private int[][] eastBorder;
+    private int[][] southBorder;
+
+    // abstract nodes of each cluster, and their k x k intra-cluster distances (-1 = unreachable)
+    private int[][] clusterNodes;
+    private int[][] clusterDist;
+
+    // ===== QUERY BUFFERS =====
+    // local floods, indexed by (r - r0) * clusterSize + (c - c0)
+    private final int[] startDist;
+    private final int[] startParent;
+    private final int[] goalDist;
+    private final int[] localQueue;
+    // abstract A*; the last slot is the goal
+    private int[] g = new int[0];
+    private int[] parent = new int[0];
+    private int[] mark = new int[0];
+    private int stamp = 0;
+    private final IntHeap open = new IntHeap(256);
+    private int[] abstractPath = new int[0];
+    private int lastExpanded = 0;
+
+    // ===== ABSTRACT PATH CACHE =====
+    private static final int PATH_CACHE_SIZE = 8;
+    private final int[] cachedGoalCluster = new int[PATH_CACHE_SIZE]; // -1 = empty
+    private final int[][] cachedPath = new int[PATH_CACHE_SIZE][];    // abstract nodes, start side first
+    private final int[] cachedLength = new int[PATH_CACHE_SIZE];
+    private int cacheNext = 0;
+    long searches = 0;   // abstract searches run
+    long cacheHits = 0;  // queries answered from a cached path
+
+    // A copy of the abstract path cache, for GameSnapshot: which path answers a
+    // query decides between equally short routes, so a restored game needs the
+    // same cached paths to replay the same. Empty when new.
+    static final class SavedCache {
+        final int[] goalCluster = new int[PATH_CACHE_SIZE];
+        final int[][] path = new int[PATH_CACHE_SIZE][];
+        final int[] length = new int[PATH_CACHE_SIZE];
+        int next = 0;
+
+        SavedCache() {
+            clear();
+        }
+
+        void clear() {
+            Arrays.fill(goalCluster, -1);
+            next = 0;
+        }
+    }
+
+    // ===== LANDMARKS =====
+    private int[][] landmarkDist = new int[0][]; // [landmark][node slot], -1 = unreachable
+    // per query: landmark distances of the goal cluster's reachable entries, and
+    // each entry's distance to the goal
+    private int goalEntries = 0;
+    private int[] goalEntryDist = new int[16];
+    private int[] goalEntryLandmark = new int[16 * LANDMARKS];
+
+    HierarchicalGraph(MazeGraph graph) {
+        this(graph, DEFAULT_CLUSTER_SIZE);
+    }
+
+    HierarchicalGraph(MazeGraph graph, int clusterSize) {
+        this.graph = graph;
+        this.clusterSize = clusterSize;
+        this.clusterRows = (graph.rowCount + clusterSize - 1) / clusterSize;
+        this.clusterCols = (graph.columnCount + clusterSize - 1) / clusterSize;
+
+        int area = clusterSize * clusterSize;
+        startDist = new int[area];
+        startParent = new int[area];
+        goalDist = new int[area];
+        localQueue = new int[area];
+
+        rebuildAll();
+    }
+
+    private void rebuildAll() {
+        int clusters = clusterRows * clusterCols;
+        nodeSlots = 0;
+        liveNodes = 0;
+        eastBorder = new int[clusters][];
+        southBorder = new int[clusters][];
+        clusterNodes = new int[clusters][];
+        clusterDist = new int[clusters][];
+        for (int k = 0; k < clusters; k++) {
+            buildEastBorder(k);
+            buildSouthBorder(k);
+        }
+        for (int k = 0; k < clusters; k++) {
+            buildCluster(k);
+        }
+        buildLandmarks();
+        Arrays.fill(cachedGoalCluster, -1);
+    }
+
+    // Switch to a new graph of the same size, rebuilding only what its changed tiles touch.
+    void update(MazeGraph newGraph) {
+        if (newGraph.rowCount != graph.rowCount || newGraph.columnCount != graph.columnCount)
+            throw new IllegalArgumentException("map size changed; build a new HierarchicalGraph");
+
+        long[] before = graph.walkable;
+        long[] after = newGraph.walkable;
+        graph = newGraph;
+
+        boolean[] changed = new boolean[clusterRows * clusterCols];
+        boolean any = false;
+        for (int w = 0; w < after.length; w++) {
+            long diff = before[w] ^ after[w];
+            while (diff != 0) {
+                int id = (w << 6) + Long.numberOfTrailingZeros(diff);
+                diff &= diff - 1;
+                changed[clusterOf(id)] = true;
+                any = true;
+            }
+        }
+        if (!any)
+            return;
+
+        // every border of a changed cluster, then every cluster on either side of one
+        boolean[] rebuild = new boolean[changed.length];
+        for (int k = 0; k < changed.length; k++) {
+            if (!changed[k])
+                continue;
+            int cr = k / clusterCols, cc = k % clusterCols;
+            buildEastBorder(k);
+            buildSouthBorder(k);
+            rebuild[k] = true;
+            if (cc > 0) {
+                buildEastBorder(k - 1);
+                rebuild[k - 1] = true;
+            }
+            if (cr > 0) {
+                buildSouthBorder(k - clusterCols);
+                rebuild[k - clusterCols] = true;
+            }
+            if (cc + 1 < clusterCols)
+                rebuild[k + 1] = true;
+            if (cr + 1 < clusterRows)
+                rebuild[k + clusterCols] = true;
+        }
+
+        if (nodeSlots > 2 * liveNodes + 64) {
+            rebuildAll(); // too many dead slots, start over compactly
+            return;
+        }
+        for (int k = 0; k < rebuild.length; k++) {
+            if (rebuild[k])
+                buildCluster(k);
+        }
+        buildLandmarks();
+        Arrays.fill(cachedGoalCluster, -1); // cached paths may run through removed nodes
+    }
+
+    void saveCache(SavedCache s) {
+        for (int e = 0; e < PATH_CACHE_SIZE; e++) {
+            s.goalCluster[e] = cachedGoalCluster[e];
+            s.length[e] = cachedLength[e];
+            if (cachedGoalCluster[e] < 0)
+                continue;
+            if (s.path[e] == null || s.path[e].length < cachedLength[e]) {
+                s.path[e] = new int[cachedPath[e].length];
+            }
+            System.arraycopy(cachedPath[e], 0, s.path[e], 0, cachedLength[e]);
+        }
+        s.next = cacheNext;
+    }
+
+    void restoreCache(SavedCache s) {
+        for (int e = 0; e < PATH_CACHE_SIZE; e++) {
+            cachedGoalCluster[e] = s.goalCluster[e];
+            cachedLength[e] = s.length[e];
+            if (s.goalCluster[e] < 0)
+                continue;
+            if (cachedPath[e] == null || cachedPath[e].length < s.length[e]) {
+                cachedPath[e] = new int[s.path[e].length];
+            }
+            System.arraycopy(s.path[e], 0, cachedPath[e], 0, s.length[e]);
+        }
+        cacheNext = s.next;
+    }
+
+    int clusterOf(int tile) {
+        int r = tile / graph.columnCount, c = tile % graph.columnCount;
+        return (r / clusterSize) * clusterCols + c / clusterSize;
+    }
+
+    int abstractNodeCount() {
+        return liveNodes;
+    }
+
+    // abstract nodes popped plus tiles flooded by the last query
+    int lastExpanded() {
+        return lastExpanded;
+    }
+
+    // ===== BUILD =====
+
+    private void buildEastBorder(int k) {
+        kill(eastBorder[k]);
+        eastBorder[k] = null;
+        int cr = k / clusterCols, cc = k % clusterCols;
+        if (cc + 1 >= clusterCols)
+            return;
+        int left = (cc + 1) * clusterSize - 1;
+        int r0 = cr * clusterSize, r1 = Math.min(r0 + clusterSize, graph.rowCount);
+        eastBorder[k] = scanBorder(k, k + 1, r0, r1, left, true);
+    }
+
+    private void buildSouthBorder(int k) {
+        kill(southBorder[k]);
+        southBorder[k] = null;
+        int cr = k / clusterCols, cc = k % clusterCols;
+        if (cr + 1 >= clusterRows)
+            return;
+        int top = (cr + 1) * clusterSize - 1;
+        int c0 = cc * clusterSize, c1 = Math.min(c0 + clusterSize, graph.columnCount);
+        southBorder[k] = scanBorder(k, k + clusterCols, c0, c1, top, false);
+    }
+
+    // Walk the border line from `from` to `to`; `line` is the last column (east)
+    // or row (south) of cluster a. Returns the transitions as (a-side, b-side) pairs.
+    private int[] scanBorder(int a, int b, int from, int to, int line, boolean east) {
+        int[] pairs = new int[0];
+        int runStart = -1;
+        for (int i = from; i <= to; i++) {
+            boolean crossing = i < to && crossable(i, line, east);
+            if (crossing && runStart < 0) {
+                runStart = i;
+            } else if (!crossing && runStart >= 0) {
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= LONG_RUN) {
+                    pairs = addTransition(pairs, a, b, runStart, line, east);
+                    pairs = addTransition(pairs, a, b, runEnd, line, east);
+                } else {
+                    pairs = addTransition(pairs, a, b, (runStart + runEnd) >>> 1, line, east);
+                }
+                runStart = -1;
+            }
+        }
+        return pairs;
+    }
+
+    private boolean crossable(int i, int line, boolean east) {
+        return east ? graph.nodeAt(i, line) >= 0 && graph.nodeAt(i, line + 1) >= 0
+                : graph.nodeAt(line, i) >= 0 && graph.nodeAt(line + 1, i) >= 0;
+    }
+
+    private int[] addTransition(int[] pairs, int a, int b, int i, int line, boolean east) {
+        int tileA = east ? graph.id(i, line) : graph.id(line, i);
+        int tileB = east ? graph.id(i, line + 1) : graph.id(line + 1, i);
+        int na = newNode(tileA, a);
+        int nb = newNode(tileB, b);
+        nodePair[na] = nb;
+        nodePair[nb] = na;
+        pairs = Arrays.copyOf(pairs, pairs.length + 2);
+        pairs[pairs.length - 2] = na;
+        pairs[pairs.length - 1] = nb;
+        return pairs;
+    }
+
+    private int newNode(int tile, int cluster) {
+        if (nodeSlots == nodeTile.length) {
+            int size = nodeSlots * 2;
+            nodeTile = Arrays.copyOf(nodeTile, size);
+            nodeCluster = Arrays.copyOf(nodeCluster, size);
+            nodeLocal = Arrays.copyOf(nodeLocal, size);
+            nodePair = Arrays.copyOf(nodePair, size);
+        }
+        nodeTile[nodeSlots] = tile;
+        nodeCluster[nodeSlots] = cluster;
+        liveNodes++;
+        return nodeSlots++;
+    }
+
+    private void kill(int[] pairs) {
+        if (pairs == null)
+            return;
+        for (int n : pairs) {
+            nodeCluster[n] = -1;
+            liveNodes--;
+        }
+    }
+
+    // collect the cluster's nodes from its four borders and measure every pair
+    private void buildCluster(int k) {
+        int cr = k / clusterCols, cc = k % clusterCols;
+        int[] nodes = new int[0];
+        nodes = appendSide(nodes, eastBorder[k], 0);
+        nodes = appendSide(nodes, southBorder[k], 0);
+        if (cc > 0)
+            nodes = appendSide(nodes, eastBorder[k - 1], 1);
+        if (cr > 0)
+            nodes = appendSide(nodes, southBorder[k - clusterCols], 1);
+
+        int count = nodes.length;
+        int[] dist = new int[count * count];
+        for (int i = 0; i < count; i++) {
+            nodeLocal[nodes[i]] = i;
+            floodCluster(nodeTile[nodes[i]], k, startDist, null);
+            for (int j = 0; j < count; j++) {
+                dist[i * count + j] = startDist[local(nodeTile[nodes[j]], k)];
+            }
+        }
+        clusterNodes[k] = nodes;
+        clusterDist[k] = dist;
+    }
+
+    private static int[] appendSide(int[] nodes, int[] pairs, int side) {
+        if (pairs == null)
+            return nodes;
+        int at = nodes.length;
+        nodes = Arrays.copyOf(nodes, at + pairs.length / 2);
+        for (int i = side; i < pairs.length; i += 2) {
+            nodes[at++] = pairs[i];
+        }
+        return nodes;
+    }
+
+    // Farthest-point landmarks: each one is the live node farthest (in abstract
+    // distance) from the landmarks picked so far, starting from the node
+    // farthest from an arbitrary one.
+    private void buildLandmarks() {
+        int count = Math.min(LANDMARKS, liveNodes);
+        landmarkDist = new int[count][];
+        if (count == 0)
+            return;
+
+        int[] nearest = new int[nodeSlots]; // distance to the closest landmark so far
+        int seed = 0;
+        while (nodeCluster[seed] < 0)
+            seed++;
+        int[] scratch = new int[nodeSlots];
+        int next = farthest(abstractDistances(seed, scratch), null);
+        for (int l = 0; l < count; l++) {
+            landmarkDist[l] = abstractDistances(next, new int[nodeSlots]);
+            for (int n = 0; n < nodeSlots; n++) {
+                int d = landmarkDist[l][n];
+                nearest[n] = l == 0 ? d : (d < 0 ? nearest[n] : Math.min(nearest[n], d));
+            }
+            next = farthest(nearest, landmarkDist[l]);
+        }
+    }
+
+    // live node with the largest distance, among those reachable from the last landmark
+    private int farthest(int[] dist, int[] reachable) {
+        int best = -1;
+        for (int n = 0; n < nodeSlots; n++) {
+            if (nodeCluster[n] >= 0 && dist[n] >= 0 && (reachable == null || reachable[n] >= 0)
+                    && (best < 0 || dist[n] > dist[best]))
+                best = n;
+        }
+        return Math.max(best, 0);
+    }
+
+    // Dijkstra over the abstract graph from one node; -1 for unreachable or dead slots
+    private int[] abstractDistances(int source, int[] dist) {
+        Arrays.fill(dist, -1);
+        IntHeap heap = new IntHeap(nodeSlots);
+        boolean[] done = new boolean[nodeSlots];
+        dist[source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int n = heap.pop();
+            if (done[n])
+                continue;
+            done[n] = true;
+            int k = nodeCluster[n];
+            int[] nodes = clusterNodes[k];
+            int[] intra = clusterDist[k];
+            int row = nodeLocal[n] * nodes.length;
+            for (int j = 0; j <= nodes.length; j++) {
+                int v = j < nodes.length ? nodes[j] : nodePair[n];
+                int cost = j < nodes.length ? intra[row + j] : 1;
+                if (cost < 0 || done[v])
+                    continue;
+                int d = dist[n] + cost;
+                if (dist[v] < 0 || d < dist[v]) {
+                    dist[v] = d;
+                    heap.push(v, d);
+                }
+            }
+        }
+        return dist;
+    }
+
+    // Remember, for the query's goal cluster, each reachable entry's distance to
+    // the goal and its landmark distances, for heuristic().
+    private void prepareGoalEntries(int cg) {
+        int[] nodes = clusterNodes[cg];
+        if (goalEntryDist.length < nodes.length) {
+            goalEntryDist = new int[nodes.length];
+            goalEntryLandmark = new int[nodes.length * LANDMARKS];
+        }
+        goalEntries = 0;
+        for (int n : nodes) {
+            int d = goalDist[local(nodeTile[n], cg)];
+            if (d < 0)
+                continue;
+            goalEntryDist[goalEntries] = d;
+            for (int l = 0; l < landmarkDist.length; l++) {
+                goalEntryLandmark[goalEntries * LANDMARKS + l] = landmarkDist[l][n];
+            }
+            goalEntries++;
+        }
+    }
+
+    // Lower bound on the distance from abstract node n to the goal: Manhattan, or
+    // for each landmark L the best over goal entries t of |d(L,t) - d(L,n)| + d(t,goal).
+    private int heuristic(int n, int goal) {
+        int h = graph.heuristic(nodeTile[n], goal);
+        for (int l = 0; l < landmarkDist.length; l++) {
+            int dn = landmarkDist[l][n];
+            if (dn < 0)
+                continue;
+            int best = Integer.MAX_VALUE;
+            for (int t = 0; t < goalEntries; t++) {
+                int dt = goalEntryLandmark[t * LANDMARKS + l];
+                if (dt >= 0)
+                    best = Math.min(best, Math.abs(dt - dn) + goalEntryDist[t]);
+            }
+            if (best != Integer.MAX_VALUE && best > h)
+                h = best;
+        }
+        return h;
+    }
+
+    // ===== LOCAL FLOODS =====
+
+    private int local(int tile, int k) {
+        int r = tile / graph.columnCount - (k / clusterCols) * clusterSize;
+        int c = tile % graph.columnCount - (k % clusterCols) * clusterSize;
+        return r * clusterSize + c;
+    }
+
+    private int tileAt(int local, int k) {
+        int r = (k / clusterCols) * clusterSize + local / clusterSize;
+        int c = (k % clusterCols) * clusterSize + local % clusterSize;
+        return r * graph.columnCount + c;
+    }
+
+    // BFS from tile that never leaves cluster k; dist (and parent, if given) by local index
+    private int floodCluster(int tile, int k, int[] dist, int[] parentOut) {
+        Arrays.fill(dist, -1);
+        int[] offsets = graph.offsets;
+        int[] adjacency = graph.adjacency;
+        int head = 0, tail = 0;
+        int s = local(tile, k);
+        dist[s] = 0;
+        if (parentOut != null)
+            parentOut[s] = -1;
+        localQueue[tail++] = s;
+        while (head < tail) {
+            int current = localQueue[head++];
+            int id = tileAt(current, k);
+            for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+                int nb = adjacency[e];
+                if (clusterOf(nb) != k)
+                    continue;
+                int v = local(nb, k);
+                if (dist[v] < 0) {
+                    dist[v] = dist[current] + 1;
+                    if (parentOut != null)
+                        parentOut[v] = current;
+                    localQueue[tail++] = v;
+                }
+            }
+        }
+        return head;
+    }
+
+    // first tile after start on the local BFS tree toward target (both in cluster k)
+    private int firstLocalStep(int start, int target, int k) {
+        int s = local(start, k);
+        int step = local(target, k);
+        while (startParent[step] != s) {
+            step = startParent[step];
+        }
+        return tileAt(step, k);
+    }
+
+    // ===== QUERY =====
+
+    // Next tile from start toward goal, start itself if they are equal, -1 if unreachable.
+    int nextStep(int start, int goal) {
+        lastExpanded = 0;
+        if (start < 0 || goal < 0)
+            return -1;
+        if (start == goal)
+            return start;
+
+        int cs = clusterOf(start), cg = clusterOf(goal);
+        lastExpanded += floodCluster(start, cs, startDist, startParent);
+        if (cs == cg && startDist[local(goal, cs)] >= 0)
+            return firstLocalStep(start, goal, cs);
+        lastExpanded += floodCluster(goal, cg, goalDist, null);
+
+        for (int e = 0; e < PATH_CACHE_SIZE; e++) {
+            if (cachedGoalCluster[e] == cg) {
+                int step = cachedStep(e, start, cs, cg);
+                if (step >= 0) {
+                    cacheHits++;
+                    return step;
+                }
+            }
+        }
+
+        searches++;
+        prepareGoalEntries(cg);
+
+        int goalNode = prepareSearch();
+        int closedMark = -stamp;
+        open.clear();
+        for (int n : clusterNodes[cs]) {
+            int d = startDist[local(nodeTile[n], cs)];
+            if (d >= 0)
+                relax(n, -1, d, goal);
+        }
+
+        while (!open.isEmpty()) {
+            int n = open.pop();
+            if (n == goalNode)
+                break;
+            if (mark[n] == closedMark)
+                continue;
+            mark[n] = closedMark;
+            lastExpanded++;
+
+            int gn = g[n];
+            int k = nodeCluster[n];
+            if (k == cg) {
+                int d = goalDist[local(nodeTile[n], cg)];
+                if (d >= 0)
+                    relaxGoal(goalNode, n, gn + d);
+            }
+
+            int[] nodes = clusterNodes[k];
+            int[] dist = clusterDist[k];
+            int row = nodeLocal[n] * nodes.length;
+            for (int j = 0; j < nodes.length; j++) {
+                int d = dist[row + j];
+                if (d >= 0 && nodes[j] != n && mark[nodes[j]] != closedMark)
+                    relax(nodes[j], n, gn + d, goal);
+            }
+            int across = nodePair[n];
+            if (mark[across] != closedMark)
+                relax(across, n, gn + 1, goal);
+        }
+
+        if (mark[goalNode] != stamp)
+            return -1;
+
+        // abstract path back to front, kept start side first for the next queries
+        int length = 0;
+        for (int n = parent[goalNode]; n != -1; n = parent[n]) {
+            abstractPath[length++] = n;
+        }
+        int e = cacheNext; // round robin, so ghosts chasing one cluster from different sides keep their own
+        cacheNext = (cacheNext + 1) % PATH_CACHE_SIZE;
+        if (cachedPath[e] == null || cachedPath[e].length < length) {
+            cachedPath[e] = new int[Math.max(length, 16)];
+        }
+        for (int i = 0; i < length; i++) {
+            cachedPath[e][i] = abstractPath[length - 1 - i];
+        }
+        cachedLength[e] = length;
+        cachedGoalCluster[e] = cg;
+        return cachedStep(e, start, cs, cg);
+    }
+
+    // Step from start along cached path e: toward the furthest path node that is
+    // reachable inside start's cluster, or across the border if start is on it.
+    // -1 if the path does not help (its end no longer reaches the goal, or no
+    // node of it is reachable from start).
+    private int cachedStep(int e, int start, int cs, int cg) {
+        int[] path = cachedPath[e];
+        int length = cachedLength[e];
+        int last = path[length - 1];
+        if (nodeCluster[last] != cg || goalDist[local(nodeTile[last], cg)] < 0)
+            return -1;
+
+        for (int i = length - 1; i >= 0; i--) {
+            int n = path[i];
+            if (nodeCluster[n] != cs || startDist[local(nodeTile[n], cs)] < 0)
+                continue;
+            // skip nodes on start's own tile (it may be a transition, maybe two)
+            while (nodeTile[n] == start) {
+                if (++i == length)
+                    return -1;
+                n = path[i];
+            }
+            return nodeCluster[n] == cs ? firstLocalStep(start, nodeTile[n], cs) : nodeTile[n];
+        }
+        return -1;
+    }
+
+    private int prepareSearch() {
+        int size = nodeSlots + 1;
+        if (g.length < size) {
+            g = new int[size * 2];
+            parent = new int[size * 2];
+            mark = new int[size * 2];
+            abstractPath = new int[size * 2];
+            stamp = 0;
+        }
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        return nodeSlots; // the goal gets the slot after the last node
+    }
+
+    private void relax(int n, int from, int cost, int goal) {
+        if (mark[n] == stamp && g[n] <= cost)
+            return;
+        g[n] = cost;
+        parent[n] = from;
+        mark[n] = stamp;
+        open.push(n, cost + heuristic(n, goal));
+    }
+
+    private void relaxGoal(int goalNode, int from, int cost) {
+        if (mark[goalNode] == stamp && g[goalNode] <= cost)
+            return;
+        g[goalNode] = cost;
+        parent[goalNode] = from;
+        mark[goalNode] = stamp;
+        open.push(goalNode, cost);
+    }
+}
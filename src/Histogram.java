@@ -0,0 +1,78 @@
+/*
+ * Log-linear histogram of non-negative longs (nanoseconds, node counts, bytes).
+ * Every power of two is split into 8 buckets, so a reported percentile is within
+ * about 12% of the true value. Recording is a few shifts and an array increment
+ * with no allocation, cheap enough to do several times per tick.
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_COUNT];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        if (value > max)
+            max = value;
+    }
+
+    // values below 8 get a bucket each; above that, 8 buckets per power of two
+    private static int bucket(long value) {
+        if (value < SUB_COUNT)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    // smallest value that lands in the bucket
+    private static long lowest(int bucket) {
+        if (bucket < SUB_COUNT)
+            return bucket;
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        return (long) (SUB_COUNT + bucket % SUB_COUNT) << (exponent - SUB_BITS);
+    }
+
+    long count() {
+        return count;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // upper edge of the bucket holding the p-th percentile (p in 0..100)
+    long percentile(double p) {
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                long upper = b + 1 < counts.length ? lowest(b + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, max);
+            }
+        }
+        return max;
+    }
+
+    void reset() {
+        java.util.Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+}
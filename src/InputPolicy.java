@@ -0,0 +1,25 @@
+import java.util.Random;
+
+/*
+ * Who plays Pac-Man when nobody is at the keyboard: called once per tick and
+ * returns the direction to queue (U/D/L/R) or '\0' to leave the queue alone.
+ * Policies keep their own state, so use one instance per game.
+ */
+public interface InputPolicy {
+
+    char nextInput(GameEngine game, long tick);
+
+    // picks a random direction every few ticks, like a button-mashing player
+    static InputPolicy random(long seed, int ticksPerChange) {
+        Random random = new Random(seed);
+        char[] directions = { 'U', 'D', 'L', 'R' };
+        return (game, tick) -> tick % ticksPerChange == 0 ? directions[random.nextInt(4)] : '\0';
+    }
+
+    // plays the script (a string of U/D/L/R) one letter every ticksPerMove ticks, looping
+    static InputPolicy scripted(String script, int ticksPerMove) {
+        return (game, tick) -> tick % ticksPerMove == 0
+                ? script.charAt((int) ((tick / ticksPerMove) % script.length()))
+                : '\0';
+    }
+}
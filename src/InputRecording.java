@@ -0,0 +1,261 @@
+import java.io.*;
+import java.util.zip.CRC32;
+
+/*
+ * Compact binary recording of one game's input, for replaying it headless.
+ *
+ * The engine is deterministic given its map, its seed and the inputs, so that is
+ * all a recording keeps. Only inputs that actually change queuedDirection are
+ * stored (a held or repeated key changes nothing), each as one varint:
+ *
+ *     (ticks since previous event << 2) | direction (0=U 1=D 2=L 3=R)
+ *
+ * which is one byte for anything within 32 ticks of the previous event.
+ *
+ * File layout (big-endian):
+ *     int  magic 'PMR1'
+ *     int  map CRC32     (replay refuses a different map)
+ *     long seed
+ *     long total ticks
+ *     int  event count
+ *     int  event bytes length, then the varint events
+ *     long final stateHash (checked at the end of a replay)
+ *
+ * The game window (PacMan, ActiveGame) records every game and, with
+ * -Dpacman.recordings=<dir>, saves it there when it ends; the seed is on the
+ * game-over line. Ghosts that plan against a time
+ * budget (mcts in the game window) don't play the same twice, so a game with
+ * them doesn't replay.
+ */
+public class InputRecording {
+
+    static final int MAGIC = 0x504D5231; // "PMR1"
+    private static final String DIRECTIONS = "UDLR";
+
+    final int mapCrc;
+    final long seed;
+    private ByteArrayOutputStream events = new ByteArrayOutputStream();
+    private int eventCount = 0;
+    private long ticks = 0;
+    private long lastEventTick = 0;
+    private long finalStateHash;
+
+    private InputRecording(int mapCrc, long seed) {
+        this.mapCrc = mapCrc;
+        this.seed = seed;
+    }
+
+    // Start recording a game that has just been created or restarted.
+    static InputRecording start(GameEngine game) {
+        return new InputRecording(game.mapCrc(), game.seed);
+    }
+
+    // Record this tick's input and advance the game; use instead of game.step(input).
+    void step(GameEngine game, char input) {
+        if (input != '\0' && input != game.queuedDirection && !game.gameOver) {
+            writeVarint(((ticks - lastEventTick) << 2) | DIRECTIONS.indexOf(input));
+            lastEventTick = ticks;
+            eventCount++;
+        }
+        game.step(input);
+        ticks++;
+        finalStateHash = game.stateHash();
+    }
+
+    long ticks() {
+        return ticks;
+    }
+
+    int eventCount() {
+        return eventCount;
+    }
+
+    int sizeInBytes() {
+        return 36 + events.size();
+    }
+
+    // ===== REPLAY =====
+
+    // Play the recording back on a fresh engine as fast as possible.
+    GameEngine replay(String[] tileMap) {
+        if (mapCrc(tileMap) != mapCrc) {
+            throw new IllegalArgumentException("recording was made on a different map");
+        }
+        return replay(new GameEngine(tileMap, seed));
+    }
+
+    // Play the recording back on game: a game just started on the recorded level
+    // (a tile map or a binary map) from the recording's seed, with the ghost
+    // searches the recorded game had.
+    GameEngine replay(GameEngine game) {
+        if (game.mapCrc() != mapCrc) {
+            throw new IllegalArgumentException("recording was made on a different map");
+        }
+        if (game.seed != seed || game.tick != 0) {
+            throw new IllegalArgumentException("replay needs a new game from seed " + seed);
+        }
+
+        // decode the events to absolute ticks first, then run the tick loop flat out
+        long[] eventTicks = new long[eventCount];
+        char[] eventInputs = new char[eventCount];
+        byte[] data = events.toByteArray();
+        int pos = 0;
+        long t = 0;
+        for (int e = 0; e < eventCount; e++) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            t += v >>> 2;
+            eventTicks[e] = t;
+            eventInputs[e] = DIRECTIONS.charAt((int) (v & 3));
+        }
+
+        int next = 0;
+        for (long tick = 0; tick < ticks; tick++) {
+            char input = '\0';
+            if (next < eventCount && eventTicks[next] == tick) {
+                input = eventInputs[next++];
+            }
+            game.step(input);
+        }
+        return game;
+    }
+
+    // true if the replayed game ended in exactly the recorded state
+    boolean matches(GameEngine replayed) {
+        return replayed.stateHash() == finalStateHash;
+    }
+
+    // ===== FILE FORMAT =====
+
+    void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(mapCrc);
+        data.writeLong(seed);
+        data.writeLong(ticks);
+        data.writeInt(eventCount);
+        data.writeInt(events.size());
+        events.writeTo(data);
+        data.writeLong(finalStateHash);
+        data.flush();
+    }
+
+    static InputRecording read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not a Pac-Man input recording");
+        }
+        InputRecording recording = new InputRecording(data.readInt(), data.readLong());
+        recording.ticks = data.readLong();
+        recording.eventCount = data.readInt();
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        recording.events.write(bytes);
+        recording.finalStateHash = data.readLong();
+        return recording;
+    }
+
+    void save(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    static InputRecording load(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    // A front end's game has ended: if -Dpacman.recordings=<dir> is set, save it
+    // there as pacman-<seed>.pmr. The write runs on a thread of its own so the
+    // game loop never waits on the disk; the recording is finished, nothing
+    // changes it any more.
+    void saveFinished() {
+        String dir = System.getProperty("pacman.recordings");
+        if (dir == null)
+            return;
+        File file = new File(dir, "pacman-" + seed + ".pmr");
+        new Thread(() -> {
+            try {
+                save(file);
+            } catch (IOException e) {
+                System.err.println("could not save the game's recording: " + e.getMessage());
+            }
+        }, "pacman-recording-save").start();
+    }
+
+    private void writeVarint(long v) {
+        while ((v & ~0x7FL) != 0) {
+            events.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        events.write((int) v);
+    }
+
+    static int mapCrc(String[] tileMap) {
+        CRC32 crc = new CRC32();
+        for (String row : tileMap) {
+            crc.update(row.getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+            crc.update('\n');
+        }
+        return (int) crc.getValue();
+    }
+
+    // a new game from seed on map: a TileMaps name or map file, or a .pmap binary map
+    static GameEngine newGame(String map, long seed) throws IOException {
+        return map.endsWith(".pmap") ? new GameEngine(BinaryMap.open(java.nio.file.Path.of(map)), seed)
+                : new GameEngine(TileMaps.byName(map), seed);
+    }
+
+    // java InputRecording record <file> [seed] [ticks] [--map=<map>]  - play random input and save it
+    // java InputRecording replay <file> [--map=<map>]                  - replay headless and check the end state
+    // The map is the stock one by default, as for GameEngine --map=. A game recorded
+    // in the game window with -Dpacman.search=... replays with the same -Dpacman.search.
+    public static void main(String[] args) throws IOException {
+        String map = "stock";
+        java.util.List<String> rest = new java.util.ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--map=")) {
+                map = arg.substring("--map=".length());
+            } else {
+                rest.add(arg);
+            }
+        }
+        if (rest.size() < 2) {
+            System.out.println("usage: java InputRecording record <file> [seed] [ticks] [--map=<map>] | replay <file> [--map=<map>]");
+            return;
+        }
+        File file = new File(rest.get(1));
+
+        if (rest.get(0).equals("record")) {
+            long seed = rest.size() > 2 ? Long.parseLong(rest.get(2)) : System.nanoTime();
+            long ticks = rest.size() > 3 ? Long.parseLong(rest.get(3)) : 10_000;
+            GameEngine game = newGame(map, seed);
+            InputRecording recording = start(game);
+            InputPolicy input = InputPolicy.random(seed, 8);
+            for (long t = 0; t < ticks && !game.gameOver; t++) {
+                recording.step(game, input.nextInput(game, t));
+            }
+            recording.save(file);
+            System.out.printf("recorded %d ticks, %d input events, %d bytes, seed %d, score %d%n",
+                    recording.ticks(), recording.eventCount(), recording.sizeInBytes(), seed, game.score);
+        } else {
+            InputRecording recording = load(file);
+            GameEngine game = newGame(map, recording.seed);
+            game.chooseSearches(System.getProperty("pacman.search", ""));
+            long start = System.nanoTime();
+            recording.replay(game);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("replayed %d ticks in %.3fs (%.0f ticks/s), seed %d, score %d, lives %d, %s%n",
+                    recording.ticks(), seconds, recording.ticks() / seconds, recording.seed, game.score, game.lives,
+                    recording.matches(game) ? "end state matches" : "END STATE DIFFERS");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Binary min-heap of int values ordered by an int priority, backed by two
+ * parallel arrays so A* can run without boxing or a comparator lambda.
+ * Entries are never removed early: a node that gets a better score is simply
+ * pushed again and the stale copy is skipped when it is popped.
+ */
+public class IntHeap {
+
+    private int[] values;
+    private int[] priorities;
+    private int size = 0;
+
+    IntHeap(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+        priorities = new int[values.length];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void push(int value, int priority) {
+        if (size == values.length) {
+            values = java.util.Arrays.copyOf(values, size * 2);
+            priorities = java.util.Arrays.copyOf(priorities, size * 2);
+        }
+
+        // sift up
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority)
+                break;
+            values[i] = values[parent];
+            priorities[i] = priorities[parent];
+            i = parent;
+        }
+        values[i] = value;
+        priorities[i] = priority;
+    }
+
+    // removes and returns the value with the lowest priority
+    int pop() {
+        int top = values[0];
+        size--;
+        if (size > 0) {
+            int value = values[size];
+            int priority = priorities[size];
+
+            // sift down
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && priorities[child + 1] < priorities[child])
+                    child++;
+                if (priorities[child] >= priority)
+                    break;
+                values[i] = values[child];
+                priorities[i] = priorities[child];
+                i = child;
+            }
+            values[i] = value;
+            priorities[i] = priority;
+        }
+        return top;
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.Arrays;
+
+/*
+ * Jump Point Search on the 4-connected tile grid.
+ *
+ * A* with uniform cost 1 expands every tile of an open area, because many
+ * equally short paths reach each tile. JPS only keeps one canonical shape per
+ * path, horizontal runs first, and jumps in straight lines until something
+ * forces a turn:
+ *
+ *   - a vertical jump stops where a side tile is open but the tile behind that
+ *     side tile is not (the side tile can only be reached well through here)
+ *   - a horizontal jump stops wherever a vertical jump from it finds something
+ *   - both stop at the goal
+ *
+ * Only those jump points go on the open list. Path lengths are the same as A*'s;
+ * parent[] links each jump point to the one it was jumped to from, so a path is
+ * straight lines between consecutive jump points.
+ *
+ * Every step of a horizontal jump tries both vertical jumps, so those are
+ * precomputed: per tile and vertical direction, how many open tiles there are
+ * before a wall and how far the first forced tile is. Apart from the goal, which
+ * is checked against the column, a vertical jump is then two array reads.
+ */
+public class JumpPointSearch {
+
+    private final MazeGraph graph;
+    private final int rowCount;
+    private final int columnCount;
+
+    private final boolean[] open;
+    // by tile id: open tiles straight up / down before a wall, and steps to the
+    // first tile there a vertical jump stops at (0 = none before the wall)
+    private final int[] runUp, runDown, forcedUp, forcedDown;
+
+    final int[] parent; // by tile id, valid for tiles the last search reached
+    private final int[] g;
+    private final int[] mark; // == stamp: g valid, == -stamp: closed
+    private int stamp = 0;
+    private final IntHeap openList;
+
+    private int goal;
+    private int expanded = 0;
+    private int cost = -1;
+
+    JumpPointSearch(MazeGraph graph) {
+        this.graph = graph;
+        this.rowCount = graph.rowCount;
+        this.columnCount = graph.columnCount;
+        int tiles = rowCount * columnCount;
+        parent = new int[tiles];
+        g = new int[tiles];
+        mark = new int[tiles];
+        openList = new IntHeap(64);
+
+        open = new boolean[tiles];
+        for (int id : graph.nodeIds) {
+            open[id] = true;
+        }
+        runUp = new int[tiles];
+        runDown = new int[tiles];
+        forcedUp = new int[tiles];
+        forcedDown = new int[tiles];
+        for (int r = 1; r < rowCount; r++) {
+            for (int c = 0; c < columnCount; c++) {
+                int id = r * columnCount + c, above = id - columnCount;
+                if (open[id] && open[above]) {
+                    runUp[id] = runUp[above] + 1;
+                    forcedUp[id] = isForced(r - 1, c, -1) ? 1 : forcedUp[above] == 0 ? 0 : forcedUp[above] + 1;
+                }
+            }
+        }
+        for (int r = rowCount - 2; r >= 0; r--) {
+            for (int c = 0; c < columnCount; c++) {
+                int id = r * columnCount + c, below = id + columnCount;
+                if (open[id] && open[below]) {
+                    runDown[id] = runDown[below] + 1;
+                    forcedDown[id] = isForced(r + 1, c, 1) ? 1 : forcedDown[below] == 0 ? 0 : forcedDown[below] + 1;
+                }
+            }
+        }
+    }
+
+    // a vertical jump moving dr stops at (r, c): a side tile is open but the
+    // tile behind that side tile is not
+    private boolean isForced(int r, int c, int dr) {
+        return (isOpen(r, c - 1) && !isOpen(r - dr, c - 1)) || (isOpen(r, c + 1) && !isOpen(r - dr, c + 1));
+    }
+
+    // jump points expanded by the last search
+    int lastExpanded() {
+        return expanded;
+    }
+
+    // path length found by the last search, -1 if none
+    int lastCost() {
+        return cost;
+    }
+
+    // Search from start to goal; true if found. The path is left in parent[].
+    boolean search(int start, int goal) {
+        this.goal = goal;
+        expanded = 0;
+        cost = -1;
+        if (start < 0 || goal < 0)
+            return false;
+
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        int closedMark = -stamp;
+        openList.clear();
+        g[start] = 0;
+        mark[start] = stamp;
+        parent[start] = -1;
+        openList.push(start, graph.heuristic(start, goal));
+
+        while (!openList.isEmpty()) {
+            int current = openList.pop();
+            if (current == goal) {
+                cost = g[goal];
+                return true;
+            }
+            if (mark[current] == closedMark)
+                continue;
+            mark[current] = closedMark;
+            expanded++;
+
+            int r = current / columnCount, c = current % columnCount;
+            int from = parent[current];
+            if (from < 0) {
+                jumpFrom(current, r, c, -1, 0);
+                jumpFrom(current, r, c, 1, 0);
+                jumpFrom(current, r, c, 0, -1);
+                jumpFrom(current, r, c, 0, 1);
+            } else if (from / columnCount == r) {
+                // arrived horizontally: carry on, or turn either way
+                int dc = c > from % columnCount ? 1 : -1;
+                jumpFrom(current, r, c, 0, dc);
+                jumpFrom(current, r, c, -1, 0);
+                jumpFrom(current, r, c, 1, 0);
+            } else {
+                // arrived vertically: carry on, or turn where a side is forced
+                int dr = r > from / columnCount ? 1 : -1;
+                jumpFrom(current, r, c, dr, 0);
+                if (isOpen(r, c - 1) && !isOpen(r - dr, c - 1)) // the forced sides
+                    jumpFrom(current, r, c, 0, -1);
+                if (isOpen(r, c + 1) && !isOpen(r - dr, c + 1))
+                    jumpFrom(current, r, c, 0, 1);
+            }
+        }
+        return false;
+    }
+
+    private void jumpFrom(int current, int r, int c, int dr, int dc) {
+        int jp = jump(r, c, dr, dc);
+        if (jp < 0 || mark[jp] == -stamp)
+            return;
+
+        int tentative = g[current] + graph.heuristic(current, jp); // straight line
+        if (mark[jp] != stamp || tentative < g[jp]) {
+            g[jp] = tentative;
+            mark[jp] = stamp;
+            parent[jp] = current;
+            openList.push(jp, tentative + graph.heuristic(jp, goal));
+        }
+    }
+
+    // next jump point from (r, c) in direction (dr, dc), -1 if there is none
+    private int jump(int r, int c, int dr, int dc) {
+        if (dr != 0)
+            return verticalJump(r * columnCount + c, dr);
+
+        int goalRow = goal / columnCount;
+        while (true) {
+            c += dc;
+            if (c < 0 || c >= columnCount)
+                return -1;
+            int id = r * columnCount + c;
+            if (!open[id])
+                return -1;
+            if (id == goal)
+                return id;
+            // a turn here leads somewhere: the goal's column, or a forced tile
+            if (c == goal % columnCount && Math.abs(goalRow - r) <= (goalRow < r ? runUp[id] : runDown[id]))
+                return id;
+            if (forcedUp[id] != 0 || forcedDown[id] != 0)
+                return id;
+        }
+    }
+
+    // first stop moving dr from tile id: the goal or a forced tile, -1 at a wall
+    private int verticalJump(int id, int dr) {
+        int run = dr < 0 ? runUp[id] : runDown[id];
+        int forced = dr < 0 ? forcedUp[id] : forcedDown[id];
+        int reach = forced != 0 ? forced : run;
+
+        if (goal % columnCount == id % columnCount) {
+            int steps = (goal / columnCount - id / columnCount) * dr;
+            if (steps > 0 && steps <= reach)
+                return goal;
+        }
+        return forced != 0 ? id + forced * dr * columnCount : -1;
+    }
+
+    private boolean isOpen(int r, int c) {
+        return r >= 0 && r < rowCount && c >= 0 && c < columnCount && open[r * columnCount + c];
+    }
+
+    // Next tile from start toward goal after a successful search (start if equal).
+    int firstStep(int start, int goal) {
+        int jp = goal;
+        while (parent[jp] != start && parent[jp] >= 0) {
+            jp = parent[jp];
+        }
+        if (jp == start)
+            return start;
+        int dr = Integer.signum(jp / columnCount - start / columnCount);
+        int dc = Integer.signum(jp % columnCount - start % columnCount);
+        return start + dr * columnCount + dc;
+    }
+}
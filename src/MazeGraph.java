@@ -0,0 +1,172 @@
+/*
+ * Int-indexed maze graph.
+ *
+ * Node id = r * columnCount + c, so a tile and its node share the same number and
+ * no String keys or Node objects are needed. Walkable tiles are flagged in a
+ * bitmap and their 4-neighbors are stored compressed-sparse-row style: the
+ * neighbors of node id are adjacency[offsets[id] .. offsets[id + 1]), in the
+ * same U, D, L, R order the old Node lists used.
+ *
+ * Walkable nodes are also numbered densely (0 .. nodeCount - 1) for tables that
+ * only want one slot per walkable tile, such as the routing table. Walls have no
+ * edges, so the same adjacency is also grouped by dense index; denseAdjacency()
+ * holds it with dense neighbor indices, for floods that never need a tile id.
+ */
+public class MazeGraph {
+
+    final int rowCount;
+    final int columnCount;
+    final int nodeCount;
+
+    final long[] walkable;   // 1 bit per tile
+    final int[] offsets;     // size rowCount * columnCount + 1
+    final int[] adjacency;   // neighbor ids, grouped by node
+
+    final int[] denseIndex;  // tile id -> dense index, -1 for walls
+    final int[] nodeIds;     // dense index -> tile id
+
+    // built on first use: neighbors of dense node i are
+    // denseAdjacency[denseOffsets[i] .. denseOffsets[i + 1]), as dense indices
+    private int[] denseOffsets;
+    private int[] denseAdjacency;
+
+    private static final int[][] DIRS_RC = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+
+    MazeGraph(int rowCount, int columnCount, long[] walkable) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.walkable = walkable;
+
+        int tiles = rowCount * columnCount;
+        denseIndex = new int[tiles];
+        int count = 0;
+        for (int id = 0; id < tiles; id++) {
+            denseIndex[id] = isWalkable(id) ? count++ : -1;
+        }
+        nodeCount = count;
+        nodeIds = new int[count];
+        for (int id = 0; id < tiles; id++) {
+            if (denseIndex[id] >= 0) {
+                nodeIds[denseIndex[id]] = id;
+            }
+        }
+
+        // first pass counts edges, second pass fills them in
+        offsets = new int[tiles + 1];
+        for (int id = 0; id < tiles; id++) {
+            offsets[id + 1] = offsets[id] + (isWalkable(id) ? countNeighbors(id) : 0);
+        }
+        adjacency = new int[offsets[tiles]];
+        for (int id = 0; id < tiles; id++) {
+            if (!isWalkable(id))
+                continue;
+            int at = offsets[id];
+            int r = id / columnCount, c = id % columnCount;
+            for (int[] d : DIRS_RC) {
+                int nr = r + d[0], nc = c + d[1];
+                if (inBounds(nr, nc) && isWalkable(id(nr, nc))) {
+                    adjacency[at++] = id(nr, nc);
+                }
+            }
+        }
+    }
+
+    // A graph built earlier and stored (see BinaryMap); the arrays are taken as they are.
+    MazeGraph(int rowCount, int columnCount, long[] walkable, int[] offsets, int[] adjacency, int[] denseIndex,
+            int[] nodeIds) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.walkable = walkable;
+        this.offsets = offsets;
+        this.adjacency = adjacency;
+        this.denseIndex = denseIndex;
+        this.nodeIds = nodeIds;
+        this.nodeCount = nodeIds.length;
+    }
+
+    // Walkable = anything that is not a wall in the engine's wall grid.
+    static MazeGraph fromWalls(long[] wallGrid, int rowCount, int columnCount) {
+        return new MazeGraph(rowCount, columnCount, walkableFromWalls(wallGrid, rowCount * columnCount));
+    }
+
+    static long[] walkableFromWalls(long[] wallGrid, int tiles) {
+        long[] walkable = new long[wallGrid.length];
+        for (int w = 0; w < walkable.length; w++) {
+            walkable[w] = ~wallGrid[w];
+        }
+        if ((tiles & 63) != 0) {
+            walkable[walkable.length - 1] &= (1L << tiles) - 1; // no tiles past the end
+        }
+        return walkable;
+    }
+
+    int[] denseOffsets() {
+        if (denseOffsets == null)
+            buildDenseAdjacency();
+        return denseOffsets;
+    }
+
+    int[] denseAdjacency() {
+        if (denseAdjacency == null)
+            buildDenseAdjacency();
+        return denseAdjacency;
+    }
+
+    private void buildDenseAdjacency() {
+        int[] byDense = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            byDense[i] = offsets[nodeIds[i]];
+        }
+        byDense[nodeCount] = adjacency.length;
+        int[] neighbors = new int[adjacency.length];
+        for (int e = 0; e < adjacency.length; e++) {
+            neighbors[e] = denseIndex[adjacency[e]];
+        }
+        denseAdjacency = neighbors;
+        denseOffsets = byDense;
+    }
+
+    private int countNeighbors(int id) {
+        int r = id / columnCount, c = id % columnCount;
+        int n = 0;
+        for (int[] d : DIRS_RC) {
+            int nr = r + d[0], nc = c + d[1];
+            if (inBounds(nr, nc) && isWalkable(id(nr, nc)))
+                n++;
+        }
+        return n;
+    }
+
+    boolean inBounds(int r, int c) {
+        return r >= 0 && r < rowCount && c >= 0 && c < columnCount;
+    }
+
+    boolean isWalkable(int id) {
+        return (walkable[id >>> 6] & (1L << id)) != 0;
+    }
+
+    int id(int r, int c) {
+        return r * columnCount + c;
+    }
+
+    int row(int id) {
+        return id / columnCount;
+    }
+
+    int col(int id) {
+        return id % columnCount;
+    }
+
+    // node id at (r, c), or -1 if out of bounds or a wall
+    int nodeAt(int r, int c) {
+        if (!inBounds(r, c))
+            return -1;
+        int id = id(r, c);
+        return isWalkable(id) ? id : -1;
+    }
+
+    // Manhattan distance heuristic
+    int heuristic(int a, int b) {
+        return Math.abs(row(a) - row(b)) + Math.abs(col(a) - col(b));
+    }
+}
@@ -0,0 +1,403 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Monte Carlo tree search for the SEARCH_MCTS ghosts (--search=r:mcts,...).
+ * Each tick every worker restores a snapshot of the game and plays rollouts
+ * of up to HORIZON ticks into its own tree, until the time or rollout budget
+ * runs out; the answer is the most visited root move over all the trees.
+ * Ghosts choose with decoupled UCT, one set of UCB1 statistics per ghost, and
+ * share the reward. With a rollout budget a game plays the same every run.
+ */
+public class MonteCarloPlanner {
+
+    static final int HORIZON = 64;          // ticks per rollout, 8 tiles at ghost speed
+    static final int MAX_PLANNED = 16;      // more SEARCH_MCTS ghosts than this keep their own logic
+    static final double EXPLORATION = 0.7;  // UCB1 constant for rewards in [0, 1]
+
+    // directions by index, as (row, column) steps
+    private static final char[] DIRECTIONS = { 'U', 'D', 'L', 'R' };
+    private static final int[] ROW_STEP = { -1, 1, 0, 0 };
+    private static final int[] COLUMN_STEP = { 0, 0, -1, 1 };
+
+    private final GameEngine game;
+    private final GameSnapshot root = new GameSnapshot();
+    private final int[] plannedSlots = new int[MAX_PLANNED];
+    private int planned; // ghosts planned this tick: plannedSlots[0 .. planned)
+
+    private Worker[] workers = new Worker[0];
+    private ForkJoinPool pool;
+    long rollouts = 0; // played so far, all workers
+
+    MonteCarloPlanner(GameEngine game) {
+        this.game = game;
+    }
+
+    // Fill game.plannedStep for this tick: for each planned ghost on a tile center,
+    // the tile it should move to (searched for when it has a choice); -1 for the
+    // planned ghosts between tiles, UNPLANNED for the ghosts the planner doesn't steer.
+    void plan() {
+        GameEngine g = game;
+        Arrays.fill(g.plannedStep, GameEngine.UNPLANNED);
+        planned = 0;
+        boolean choice = false;
+        for (int i = 0; i < g.ghosts.size() && planned < MAX_PLANNED; i++) {
+            GameEngine.Block ghost = g.ghosts.get(i);
+            if (g.searchByGhost[ghost.ghostType()] != GameEngine.SEARCH_MCTS)
+                continue;
+            plannedSlots[planned++] = i;
+            int legal = exits(g, ghost);
+            g.plannedStep[i] = exit(g, ghost, only(legal));
+            choice |= Integer.bitCount(legal) >= 2;
+        }
+        if (!choice)
+            return; // nobody to decide for: the ghosts carry on
+
+        g.saveTo(root);
+        int threads = Math.max(1, g.plannerThreads);
+        if (workers.length != threads) {
+            if (pool != null)
+                pool.shutdown();
+            pool = threads > 1 ? new ForkJoinPool(threads - 1) : null;
+            workers = new Worker[threads];
+            for (int w = 0; w < threads; w++) {
+                workers[w] = new Worker();
+            }
+        }
+        long deadline = System.nanoTime() + g.plannerBudgetNanos;
+        long seed = g.stateHash();
+        for (int w = 0; w < threads; w++) {
+            workers[w].prepare(deadline, seed + w * 0x9E3779B97F4A7C15L);
+        }
+        for (int w = 1; w < threads; w++) {
+            workers[w].reinitialize();
+            pool.execute(workers[w]);
+        }
+        workers[0].reinitialize();
+        workers[0].invoke(); // this thread plays rollouts too
+        for (Worker worker : workers) {
+            worker.join();
+            rollouts += worker.played;
+        }
+
+        // each ghost's most visited direction at the root, over all trees
+        for (int p = 0; p < planned; p++) {
+            GameEngine.Block ghost = g.ghosts.get(plannedSlots[p]);
+            int legal = exits(g, ghost);
+            if (Integer.bitCount(legal) < 2)
+                continue;
+            int best = -1;
+            long bestVisits = -1;
+            for (int d = 0; d < 4; d++) {
+                if ((legal & (1 << d)) == 0)
+                    continue;
+                long visits = 0;
+                for (Worker worker : workers) {
+                    visits += worker.rootVisits(p, d);
+                }
+                if (visits > bestVisits) {
+                    bestVisits = visits;
+                    best = d;
+                }
+            }
+            g.plannedStep[ghost.slot] = exit(g, ghost, best);
+        }
+    }
+
+    // directions a ghost could take from here, as a bit mask; 0 off a tile center
+    private static int exits(GameEngine g, GameEngine.Block ghost) {
+        if (ghost.x() % g.tileSize != 0 || ghost.y() % g.tileSize != 0)
+            return 0;
+        int mask = 0;
+        for (int d = 0; d < 4; d++) {
+            if (exit(g, ghost, d) >= 0)
+                mask |= 1 << d;
+        }
+        return mask;
+    }
+
+    // the tile next to the ghost's in direction d, -1 for a wall, off the board or d = -1
+    private static int exit(GameEngine g, GameEngine.Block ghost, int d) {
+        if (d < 0)
+            return -1;
+        int r = ghost.y() / g.tileSize, c = ghost.x() / g.tileSize;
+        if (g.graph.nodeAt(r, c) < 0)
+            return -1;
+        return g.graph.nodeAt(r + ROW_STEP[d], c + COLUMN_STEP[d]);
+    }
+
+    // the one direction in a mask with exactly one, else -1 (none, or a choice)
+    private static int only(int mask) {
+        return Integer.bitCount(mask) == 1 ? Integer.numberOfTrailingZeros(mask) : -1;
+    }
+
+    private static int reverse(int d) {
+        return d ^ 1; // U <-> D, L <-> R
+    }
+
+    // One worker: a copy of the game to play rollouts on and a tree to grow.
+    @SuppressWarnings("serial")
+    private final class Worker extends RecursiveAction {
+        private GameEngine sim;
+        private final GameRandom random = new GameRandom(0);
+        private long deadline;
+        long played;
+
+        // tree: node n's statistics for planned ghost p and direction d are at
+        // n * stride + p * 4 + d
+        private int stride;
+        private int nodes;
+        private int[] visits = new int[1024];
+        private int[] edgeVisits = new int[1024 * 4];
+        private double[] edgeValue = new double[1024 * 4];
+
+        // children by (parent, joint move), open addressing
+        private int[] childParent = new int[2048];
+        private long[] childMove = new long[2048];
+        private int[] childNode = new int[2048];
+
+        // the current rollout's path through the tree, and the directions taken
+        private final int[] pathNode = new int[HORIZON];
+        private final int[] pathChoice = new int[HORIZON * MAX_PLANNED];
+        private int pathLength;
+        private final int[] legal = new int[MAX_PLANNED];
+
+        void prepare(long deadline, long seed) {
+            this.deadline = deadline;
+            random.setState(seed);
+            if (sim == null) {
+                sim = game.sameLevel();
+                sim.rollout = true;
+            }
+            stride = planned * 4;
+            nodes = 0;
+            Arrays.fill(childNode, -1);
+            newNode(); // the root
+        }
+
+        @Override
+        protected void compute() {
+            int budget = game.plannerRollouts;
+            played = 0;
+            do {
+                rollout();
+                played++;
+            } while (budget > 0 ? played < budget : System.nanoTime() < deadline);
+        }
+
+        long rootVisits(int p, int d) {
+            return edgeVisits[p * 4 + d];
+        }
+
+        private void rollout() {
+            GameEngine s = sim;
+            s.restore(root);
+            s.random.setState(random.nextLong()); // the planner doesn't get to see the game's dice
+            int lives = s.lives;
+            int eaten = s.ghostsEaten;
+            int node = 0;
+            long move = 0;
+            boolean inTree = true;
+            pathLength = 0;
+
+            int t = 0;
+            boolean caught = false;
+            while (t < HORIZON) {
+                boolean choice = false;
+                for (int p = 0; p < planned; p++) {
+                    legal[p] = exits(s, s.ghosts.get(plannedSlots[p]));
+                    choice |= Integer.bitCount(legal[p]) >= 2;
+                }
+                if (choice && inTree) {
+                    boolean expanded = false;
+                    if (t > 0) { // follow the joint move made at the last tree node
+                        int child = findChild(node, move);
+                        if (child < 0) {
+                            child = newNode();
+                            addChild(node, move, child);
+                            expanded = true;
+                        }
+                        node = child;
+                    }
+                    move = 0;
+                    for (int p = 0; p < planned; p++) {
+                        boolean chooses = Integer.bitCount(legal[p]) >= 2;
+                        int d = chooses ? select(s, node, p, legal[p]) : only(legal[p]);
+                        pathChoice[pathLength * planned + p] = chooses ? d : -1;
+                        move = move * 5 + d + 1;
+                        steer(s, p, d);
+                    }
+                    pathNode[pathLength++] = node;
+                    inTree = !expanded; // one new node per rollout, then play out
+                } else {
+                    for (int p = 0; p < planned; p++) {
+                        steer(s, p, Integer.bitCount(legal[p]) >= 2 ? playout(s, p, legal[p]) : only(legal[p]));
+                    }
+                }
+
+                s.step(random.nextInt(8) == 0 ? DIRECTIONS[random.nextInt(4)] : '\0');
+                t++;
+                if (s.lives < lives || s.gameOver) {
+                    caught = true;
+                    break;
+                }
+                if (s.foodRemaining == 0)
+                    break; // Pac-Man cleared the level: a loss for the ghosts
+            }
+
+            // in [0, 1]: a catch, more the sooner; nothing for a cleared level; else
+            // up to half for closeness; less a quarter per ghost eaten
+            double reward = caught ? 1.0 - 0.5 * t / HORIZON : s.foodRemaining == 0 ? 0 : 0.5 * closeness(s);
+            reward = Math.max(0, reward - 0.25 * (s.ghostsEaten - eaten));
+            for (int i = 0; i < pathLength; i++) {
+                int n = pathNode[i];
+                visits[n]++;
+                for (int p = 0; p < planned; p++) {
+                    int d = pathChoice[i * planned + p];
+                    if (d >= 0) {
+                        edgeVisits[n * stride + p * 4 + d]++;
+                        edgeValue[n * stride + p * 4 + d] += reward;
+                    }
+                }
+            }
+        }
+
+        private void steer(GameEngine s, int p, int d) {
+            int slot = plannedSlots[p];
+            s.plannedStep[slot] = d < 0 ? -1 : exit(s, s.ghosts.get(slot), d);
+        }
+
+        // UCB1 over the legal directions; untried ones first, toward Pac-Man
+        // first (away, while scared)
+        private int select(GameEngine s, int node, int p, int legalMask) {
+            GameEngine.Block ghost = s.ghosts.get(plannedSlots[p]);
+            int pac = s.getNodeForBlock(s.pacman);
+            int base = node * stride + p * 4;
+            double logVisits = Math.log(visits[node] + 1);
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int d = 0; d < 4; d++) {
+                if ((legalMask & (1 << d)) == 0)
+                    continue;
+                int n = edgeVisits[base + d];
+                double score = n == 0 ? 1e9 - towardPacman(s, ghost, d, pac) + random.nextDouble()
+                        : edgeValue[base + d] / n + EXPLORATION * Math.sqrt(logVisits / n);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = d;
+                }
+            }
+            return best;
+        }
+
+        // Past the tree: a legal direction, not back the way the ghost came if it
+        // has another; toward Pac-Man (away, while scared) three times in four,
+        // otherwise at random.
+        private int playout(GameEngine s, int p, int legalMask) {
+            GameEngine.Block ghost = s.ghosts.get(plannedSlots[p]);
+            int back = "UDLR".indexOf(ghost.direction());
+            int choices = back >= 0 && Integer.bitCount(legalMask) > 1 ? legalMask & ~(1 << reverse(back)) : legalMask;
+            int pac = s.getNodeForBlock(s.pacman);
+            if (pac < 0 || random.nextInt(4) == 0) {
+                int pick = random.nextInt(Integer.bitCount(choices));
+                for (int d = 0; d < 4; d++) {
+                    if ((choices & (1 << d)) != 0 && pick-- == 0)
+                        return d;
+                }
+            }
+            int best = -1, bestDistance = 0;
+            for (int d = 0; d < 4; d++) {
+                if ((choices & (1 << d)) == 0)
+                    continue;
+                int distance = towardPacman(s, ghost, d, pac);
+                if (best < 0 || distance < bestDistance) {
+                    best = d;
+                    bestDistance = distance;
+                }
+            }
+            return best;
+        }
+
+        // tiles from Pac-Man after a step in direction d; negated while scared
+        private int towardPacman(GameEngine s, GameEngine.Block ghost, int d, int pac) {
+            if (pac < 0)
+                return 0;
+            int distance = s.tileDistance(exit(s, ghost, d), pac);
+            return s.scared ? -distance : distance;
+        }
+
+        // 1 with a ghost on Pac-Man's tile, 0 with the nearest half the board
+        // away or more; the other way around while the ghosts are scared
+        private double closeness(GameEngine s) {
+            int pac = s.getNodeForBlock(s.pacman);
+            if (pac < 0)
+                return 0.5;
+            int nearest = Integer.MAX_VALUE;
+            for (int i = 0; i < s.ghosts.size(); i++) {
+                int node = s.getNodeForBlock(s.ghosts.get(i));
+                if (node >= 0)
+                    nearest = Math.min(nearest, s.tileDistance(node, pac));
+            }
+            double scale = (s.rowCount + s.columnCount) / 2.0;
+            double close = 1.0 - Math.min(1.0, nearest / scale);
+            return s.scared ? 1.0 - close : close;
+        }
+
+        private int newNode() {
+            if (nodes == visits.length) {
+                visits = Arrays.copyOf(visits, nodes * 2);
+            }
+            if ((nodes + 1) * stride > edgeVisits.length) {
+                edgeVisits = Arrays.copyOf(edgeVisits, Math.max(edgeVisits.length * 2, (nodes + 1) * stride));
+                edgeValue = Arrays.copyOf(edgeValue, edgeVisits.length);
+            }
+            if (nodes * 2 >= childNode.length) {
+                rehash(childNode.length * 2);
+            }
+            int n = nodes++;
+            visits[n] = 0;
+            Arrays.fill(edgeVisits, n * stride, (n + 1) * stride, 0);
+            Arrays.fill(edgeValue, n * stride, (n + 1) * stride, 0);
+            return n;
+        }
+
+        private int slotOf(int parent, long move, int mask) {
+            long h = (parent * 0x9E3779B97F4A7C15L) ^ (move * 0xBF58476D1CE4E5B9L);
+            return (int) (h ^ (h >>> 29)) & mask;
+        }
+
+        private int findChild(int parent, long move) {
+            int mask = childNode.length - 1;
+            for (int i = slotOf(parent, move, mask); childNode[i] >= 0; i = (i + 1) & mask) {
+                if (childParent[i] == parent && childMove[i] == move)
+                    return childNode[i];
+            }
+            return -1;
+        }
+
+        private void addChild(int parent, long move, int child) {
+            int mask = childNode.length - 1;
+            int i = slotOf(parent, move, mask);
+            while (childNode[i] >= 0) {
+                i = (i + 1) & mask;
+            }
+            childParent[i] = parent;
+            childMove[i] = move;
+            childNode[i] = child;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldParent = childParent, oldNode = childNode;
+            long[] oldMove = childMove;
+            childParent = new int[capacity];
+            childMove = new long[capacity];
+            childNode = new int[capacity];
+            Arrays.fill(childNode, -1);
+            for (int i = 0; i < oldNode.length; i++) {
+                if (oldNode[i] >= 0)
+                    addChild(oldParent[i], oldMove[i], oldNode[i]);
+            }
+        }
+    }
+}
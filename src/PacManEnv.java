@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+/*
+ * Gym-style environment: the agent plays Pac-Man against the game's own ghosts
+ * on a headless GameEngine, one tick per step(action). reset() and step()
+ * overwrite the observation arrays in place, so stepping allocates nothing. In
+ * a VectorEnv the arrays are the VectorEnv's and each environment writes its
+ * own slice.
+ */
+public class PacManEnv {
+
+    // actions: the direction to queue, as if that arrow key were pressed
+    static final int NONE = 0, UP = 1, DOWN = 2, LEFT = 3, RIGHT = 4;
+    static final int ACTIONS = 5;
+    private static final char[] INPUTS = { '\0', 'U', 'D', 'L', 'R' };
+
+    static final byte EMPTY = 0, WALL = 1, FOOD = 2, POWER = 3;
+    static final int ENTITY_FIELDS = 3; // x, y, direction
+    static final float LIFE_PENALTY = 500;
+
+    final GameEngine game;
+    final int tileCount;
+    final int entityCount;
+    long maxTicks = 20_000;
+
+    final byte[] tiles;        // a byte per tile, row-major: EMPTY, WALL, FOOD or POWER
+    final int[] entities;      // Pac-Man, then the ghosts (entityTypes()): x, y in pixels, direction 0-3 = U D L R
+    final int[] scaredTicks;   // scared ticks left, 0 when the ghosts hunt
+    final float[] rewards;     // the score the step made, less LIFE_PENALTY for a life lost
+    final boolean[] dones;     // game over, or maxTicks played
+    private final int index; // this environment's slice of the arrays
+    private int tilesVersion = -1; // the game's mapVersion when tiles was last written in full
+
+    public PacManEnv(String[] tileMap) {
+        this(new GameEngine(tileMap, 0), null, 0);
+    }
+
+    // Environment number index of a VectorEnv, writing into its arrays; with
+    // vector null, one on its own with arrays of its own.
+    PacManEnv(GameEngine game, VectorEnv vector, int index) {
+        this.game = game;
+        this.tileCount = game.rowCount * game.columnCount;
+        this.entityCount = game.entities.count;
+        this.index = index;
+        if (vector != null) {
+            tiles = vector.tiles;
+            entities = vector.entities;
+            scaredTicks = vector.scaredTicks;
+            rewards = vector.rewards;
+            dones = vector.dones;
+        } else {
+            tiles = new byte[tileCount];
+            entities = new int[entityCount * ENTITY_FIELDS];
+            scaredTicks = new int[1];
+            rewards = new float[1];
+            dones = new boolean[1];
+        }
+    }
+
+    // Start a new episode: a fresh game from seed. Same seed and same actions,
+    // same episode.
+    public void reset(long seed) {
+        game.restart(seed);
+        rewards[index] = 0;
+        dones[index] = false;
+        observe();
+    }
+
+    // Play one tick with action (NONE, UP, DOWN, LEFT or RIGHT) queued.
+    public void step(int action) {
+        GameEngine g = game;
+        int score = g.score;
+        int lives = g.lives;
+        g.step(INPUTS[action]);
+        float reward = g.score - score;
+        if (g.lives < lives)
+            reward -= LIFE_PENALTY;
+        rewards[index] = reward;
+        dones[index] = g.gameOver || g.tick >= maxTicks;
+        observe();
+    }
+
+    public float reward() {
+        return rewards[index];
+    }
+
+    public boolean done() {
+        return dones[index];
+    }
+
+    // the entities' types in entities order: ' ' for Pac-Man, then r, p, b, o, ...
+    public char[] entityTypes() {
+        return Arrays.copyOf(game.entities.type, entityCount);
+    }
+
+    // Write the game's state into this environment's slice of the observation.
+    // Within a level the only tile that can change in a tick is the one Pac-Man
+    // ate from, so the grid is only written in full after a new map was loaded.
+    void observe() {
+        GameEngine g = game;
+        if (tilesVersion != g.mapVersion) {
+            for (int id = 0; id < tileCount; id++) {
+                tiles[index * tileCount + id] = tile(g, id);
+            }
+            tilesVersion = g.mapVersion;
+        } else {
+            int id = g.pacmanTile();
+            if (id >= 0)
+                tiles[index * tileCount + id] = tile(g, id);
+        }
+
+        Entities e = g.entities;
+        int at = index * entityCount * ENTITY_FIELDS;
+        for (int i = 0; i < entityCount; i++) {
+            entities[at++] = e.x[i];
+            entities[at++] = e.y[i];
+            entities[at++] = switch (e.direction[i]) {
+                case 'U' -> 0;
+                case 'D' -> 1;
+                case 'L' -> 2;
+                default -> 3;
+            };
+        }
+        scaredTicks[index] = g.scared ? g.scaredTicksLeft : 0;
+    }
+
+    private static byte tile(GameEngine g, int id) {
+        if (GameEngine.testBit(g.wallGrid, id))
+            return WALL;
+        if (GameEngine.testBit(g.foodGrid, id))
+            return FOOD;
+        if (GameEngine.testBit(g.powerGrid, id))
+            return POWER;
+        return EMPTY;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * A ghost's path to its chase target, kept between tile centers so the ghost
+ * can keep walking it instead of searching again at every one.
+ *
+ * nodes[0 .. length) runs from where the ghost was when the path was planned to
+ * the target; the ghost is at nodes[index]. slack bounds how many tiles longer
+ * than a shortest path it may have become through cheap repairs (see
+ * GameEngine.plannedNextStep), so the engine knows when to search again.
+ */
+public class PathCache {
+
+    private int[] nodes = new int[16];
+    private int length = 0;
+    private int index = 0;
+    int slack = 0;
+    int mapVersion = -1; // the map the path was planned on
+
+    void clear() {
+        length = 0;
+        index = 0;
+        slack = 0;
+    }
+
+    // Make this path the same as other, growing the array only if it must.
+    void copyFrom(PathCache other) {
+        if (nodes.length < other.length) {
+            nodes = new int[other.nodes.length];
+        }
+        System.arraycopy(other.nodes, 0, nodes, 0, other.length);
+        length = other.length;
+        index = other.index;
+        slack = other.slack;
+        mapVersion = other.mapVersion;
+    }
+
+    boolean isEmpty() {
+        return length == 0;
+    }
+
+    int target() {
+        return length > 0 ? nodes[length - 1] : -1;
+    }
+
+    // the tile after the ghost's, or -1 if the ghost is at the end
+    int next() {
+        return index + 1 < length ? nodes[index + 1] : -1;
+    }
+
+    void append(int node) {
+        if (length == nodes.length) {
+            nodes = java.util.Arrays.copyOf(nodes, length * 2);
+        }
+        nodes[length++] = node;
+    }
+
+    // Replace the path with `count` nodes filled in back to front by the caller.
+    int[] reset(int count) {
+        if (nodes.length < count) {
+            nodes = new int[Math.max(count, nodes.length * 2)];
+        }
+        length = count;
+        index = 0;
+        slack = 0;
+        return nodes;
+    }
+
+    // The ghost is now at node. True if that is where the path says it is (or
+    // one step further along); false if it has left the path.
+    boolean follow(int node) {
+        if (length == 0)
+            return false;
+        if (nodes[index] == node)
+            return true;
+        if (index + 1 < length && nodes[index + 1] == node) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    // End the path at node if node lies ahead of the ghost on it. A prefix of a
+    // path is never further from shortest than the whole path, so slack holds.
+    boolean truncateAt(int node) {
+        for (int i = index + 1; i < length; i++) {
+            if (nodes[i] == node) {
+                length = i + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.Arrays;
+
+/*
+ * Uniform spatial hash keyed by tile: which items (ghost slots) are on which
+ * tile, so a contact test looks at the 3x3 tiles around a block instead of at
+ * every ghost.
+ *
+ * An item is filed under the tile holding its top-left corner. Blocks are one
+ * tile in size, so two of them can only overlap when their tiles are at most
+ * one row and one column apart. Tiles are hashed by row and column, which may
+ * be off the board (a block in a tunnel), into about two buckets per item;
+ * a bucket is a doubly linked list threaded through int arrays, so moving an
+ * item to another tile is O(1) and nothing is allocated after construction.
+ */
+public class SpatialHash {
+
+    private static final int UNFILED = Integer.MIN_VALUE;
+
+    private final int[] head;   // by bucket: first item, -1 if empty
+    private final int[] next;   // by item: next / previous item in its bucket, -1 at the ends
+    private final int[] prev;
+    private final int[] rows;   // by item: tile it is filed under (row UNFILED: none)
+    private final int[] cols;
+    private final int mask;
+
+    SpatialHash(int capacity) {
+        int buckets = Integer.highestOneBit(Math.max(8, capacity) * 4 - 1); // power of two >= 2 x capacity
+        head = new int[buckets];
+        mask = buckets - 1;
+        next = new int[capacity];
+        prev = new int[capacity];
+        rows = new int[capacity];
+        cols = new int[capacity];
+        clear();
+    }
+
+    void clear() {
+        Arrays.fill(head, -1);
+        Arrays.fill(rows, UNFILED);
+    }
+
+    private int bucket(int row, int col) {
+        int h = (row * 0x9E3779B1) ^ (col * 0x85EBCA6B);
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // File item under tile (row, col), moving it if it was filed elsewhere.
+    void put(int item, int row, int col) {
+        if (rows[item] == row && cols[item] == col)
+            return;
+        remove(item);
+        int b = bucket(row, col);
+        rows[item] = row;
+        cols[item] = col;
+        prev[item] = -1;
+        next[item] = head[b];
+        if (head[b] >= 0)
+            prev[head[b]] = item;
+        head[b] = item;
+    }
+
+    void remove(int item) {
+        if (rows[item] == UNFILED)
+            return;
+        if (prev[item] >= 0)
+            next[prev[item]] = next[item];
+        else
+            head[bucket(rows[item], cols[item])] = next[item];
+        if (next[item] >= 0)
+            prev[next[item]] = prev[item];
+        rows[item] = UNFILED;
+    }
+
+    // First item filed under tile (row, col), -1 if none. With next(), in no particular order:
+    //   for (int i = hash.first(r, c); i >= 0; i = hash.next(i)) ...
+    int first(int row, int col) {
+        return skipTo(head[bucket(row, col)], row, col);
+    }
+
+    // the item after item on the same tile, -1 if none
+    int next(int item) {
+        return skipTo(next[item], rows[item], cols[item]);
+    }
+
+    // other tiles can share the bucket
+    private int skipTo(int item, int row, int col) {
+        while (item >= 0 && (rows[item] != row || cols[item] != col)) {
+            item = next[item];
+        }
+        return item;
+    }
+}
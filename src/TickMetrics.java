@@ -0,0 +1,326 @@
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/*
+ * Per-tick instrumentation of the game loop.
+ *
+ * An engine only measures anything when its metrics field is set; with it null
+ * (the default) the cost is one field read and a null check per hook. When set,
+ * every section of the tick is timed into a Histogram, searches report how many
+ * nodes they expanded, the thread's allocated bytes are sampled per tick, and
+ * front ends report timer ticks that ran late or were dropped. The same numbers
+ * go out as JFR events, which JFR itself drops unless a recording enables them:
+ *
+ *     java -XX:StartFlightRecording=filename=pacman.jfr -Dpacman.metrics=true App
+ *
+ * This is also the in-process registry: sections are looked up by index or name,
+ * report() prints the whole table and the renderer draws it as an overlay.
+ */
+public class TickMetrics {
+
+    // ===== SECTIONS =====
+    static final int TICK = 0;
+    static final int PACMAN = 1;
+    static final int GHOSTS = 2;
+    static final int FOOD = 3;
+    static final int DRAW = 4;
+    // one ghost's move, by ghost type
+    static final int GHOST_BLINKY = 5;
+    static final int GHOST_PINKY = 6;
+    static final int GHOST_INKY = 7;
+    static final int GHOST_CLYDE = 8;
+    static final int GHOST_OTHER = 9;
+    // one ghost's move, by the algorithm that steered it
+    static final int ALGO_BFS = 10;
+    static final int ALGO_ASTAR = 11;
+    static final int ALGO_HYBRID = 12;
+    static final int ALGO_ROUTED = 13;
+    static final int ALGO_RANDOM = 14;
+    static final int ALGO_SCARED = 15;
+    static final int ALGO_FIELD = 16;
+    static final int ALGO_HPA = 17;
+    static final int ALGO_JPS = 18;
+    // nodes expanded per search, or per distance-field query that had to flood further
+    static final int EXPANDED_BFS = 19;
+    static final int EXPANDED_ASTAR = 20;
+    static final int EXPANDED_FIELD = 21;
+    static final int EXPANDED_HPA = 22; // tiles flooded + abstract nodes expanded
+    static final int EXPANDED_JPS = 23; // jump points, not tiles scanned
+    static final int ALLOCATED = 24; // bytes per tick
+    static final int TIMER_LATENESS = 25; // how far past its slot a timer tick ran
+    static final int ALGO_MCTS = 26; // one planned ghost's move
+    static final int PLAN_MCTS = 27; // the planner's search, once per tick
+
+    static final String[] NAMES = {
+            "tick", "movePacman", "moveGhosts", "food checks", "draw",
+            "ghost blinky", "ghost pinky", "ghost inky", "ghost clyde", "ghost other",
+            "algo bfs", "algo a*", "algo hybrid", "algo routed", "algo random", "algo scared", "algo field", "algo hpa",
+            "algo jps", "expanded bfs", "expanded a*", "expanded field", "expanded hpa", "expanded jps", "alloc/tick", "timer late",
+            "algo mcts", "plan mcts"
+    };
+
+    private static final int NANOS = 0, COUNT = 1, BYTES = 2;
+    private static final int[] UNITS = {
+            NANOS, NANOS, NANOS, NANOS, NANOS,
+            NANOS, NANOS, NANOS, NANOS, NANOS,
+            NANOS, NANOS, NANOS, NANOS, NANOS, NANOS, NANOS, NANOS,
+            NANOS, COUNT, COUNT, COUNT, COUNT, COUNT, BYTES, NANOS,
+            NANOS, NANOS
+    };
+
+    private final Histogram[] histograms = new Histogram[NAMES.length];
+
+    // timer ticks that ran more than half a period late, and ticks skipped outright
+    long lateTicks = 0;
+    long droppedTicks = 0;
+
+    // per-tick accumulators, flushed into the histograms and the JFR event by endTick
+    private long tickStart;
+    private long tickAllocStart;
+    private long tickPacman, tickGhosts, tickFood;
+    private int tickSearches, tickExpanded;
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+    private static final EventType TICK_EVENT = EventType.getEventType(TickEvent.class);
+    private static final EventType FRAME_EVENT = EventType.getEventType(FrameEvent.class);
+
+    public TickMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    // -Dpacman.metrics=true turns metrics on for the front ends from the start
+    static boolean enabledByProperty() {
+        return Boolean.getBoolean("pacman.metrics");
+    }
+
+    Histogram histogram(int section) {
+        return histograms[section];
+    }
+
+    Histogram histogram(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name))
+                return histograms[i];
+        }
+        throw new IllegalArgumentException("no such metric: " + name);
+    }
+
+    // ===== RECORDING =====
+
+    void beginTick() {
+        tickPacman = tickGhosts = tickFood = 0;
+        tickSearches = tickExpanded = 0;
+        tickAllocStart = allocatedBytes();
+        tickStart = System.nanoTime();
+    }
+
+    void endTick(long tick) {
+        long nanos = System.nanoTime() - tickStart;
+        long allocated = allocatedBytes() - tickAllocStart;
+        histograms[TICK].record(nanos);
+        if (allocated >= 0) {
+            histograms[ALLOCATED].record(allocated);
+        }
+
+        // only build the event while a recording wants it, so it cannot show up in
+        // the next tick's allocation figure
+        if (TICK_EVENT.isEnabled()) {
+            TickEvent event = new TickEvent();
+            event.tick = tick;
+            event.tickTime = nanos;
+            event.pacman = tickPacman;
+            event.ghosts = tickGhosts;
+            event.food = tickFood;
+            event.searches = tickSearches;
+            event.nodesExpanded = tickExpanded;
+            event.allocated = allocated;
+            event.commit(); // commit() still applies the recording's threshold
+        }
+    }
+
+    // Record the time since `since` under section and return the current time,
+    // so consecutive sections can be timed with one nanoTime() call each.
+    long lap(int section, long since) {
+        long now = System.nanoTime();
+        long nanos = now - since;
+        histograms[section].record(nanos);
+        switch (section) {
+            case PACMAN -> tickPacman += nanos;
+            case GHOSTS -> tickGhosts += nanos;
+            case FOOD -> tickFood += nanos;
+        }
+        return now;
+    }
+
+    // one ghost's move, under both its type and its algorithm
+    void ghostMoved(char ghostType, int algorithm, long nanos) {
+        histograms[switch (ghostType) {
+            case 'r' -> GHOST_BLINKY;
+            case 'p' -> GHOST_PINKY;
+            case 'b' -> GHOST_INKY;
+            case 'o' -> GHOST_CLYDE;
+            default -> GHOST_OTHER;
+        }].record(nanos);
+        histograms[algorithm].record(nanos);
+    }
+
+    void searched(int section, int nodesExpanded) {
+        histograms[section].record(nodesExpanded);
+        tickSearches++;
+        tickExpanded += nodesExpanded;
+    }
+
+    void drawn(long nanos) {
+        histograms[DRAW].record(nanos);
+
+        if (FRAME_EVENT.isEnabled()) {
+            FrameEvent event = new FrameEvent();
+            event.drawTime = nanos;
+            event.commit();
+        }
+    }
+
+    // A timer tick fired `interval` after the previous one instead of `period`.
+    // Swing coalesces ticks it could not deliver, so a long gap means dropped ticks.
+    void timerFired(long intervalNanos, long periodNanos) {
+        long late = intervalNanos - periodNanos;
+        if (late <= 0)
+            return;
+        histograms[TIMER_LATENESS].record(late);
+        long dropped = intervalNanos / periodNanos - 1;
+        if (late > periodNanos / 2) {
+            lateTicks++;
+            droppedTicks += dropped;
+
+            LateTickEvent event = new LateTickEvent();
+            if (event.shouldCommit()) {
+                event.late = late;
+                event.dropped = dropped;
+                event.commit();
+            }
+        }
+    }
+
+    // fixed-timestep loops know exactly how many ticks they ran late or skipped
+    void ticksLate(long late, long dropped) {
+        lateTicks += late;
+        droppedTicks += dropped;
+        if (dropped > 0) {
+            LateTickEvent event = new LateTickEvent();
+            if (event.shouldCommit()) {
+                event.dropped = dropped;
+                event.commit();
+            }
+        }
+    }
+
+    void reset() {
+        for (Histogram h : histograms) {
+            h.reset();
+        }
+        lateTicks = 0;
+        droppedTicks = 0;
+    }
+
+    // ===== REPORTING =====
+
+    // one line per section that has seen any data, plus the timer counters
+    String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-14s %10s %9s %9s %9s %9s%n", "section", "count", "mean", "p50", "p99", "max"));
+        for (int i = 0; i < histograms.length; i++) {
+            if (histograms[i].count() > 0) {
+                out.append(summary(i)).append('\n');
+            }
+        }
+        out.append(String.format("late ticks %d, dropped ticks %d%n", lateTicks, droppedTicks));
+        return out.toString();
+    }
+
+    String summary(int section) {
+        Histogram h = histograms[section];
+        int unit = UNITS[section];
+        return String.format("%-14s %10d %9s %9s %9s %9s", NAMES[section], h.count(),
+                format(h.mean(), unit), format(h.percentile(50), unit),
+                format(h.percentile(99), unit), format(h.max(), unit));
+    }
+
+    private static String format(double value, int unit) {
+        return switch (unit) {
+            case NANOS -> value >= 1e6 ? String.format("%.2fms", value / 1e6) : String.format("%.1fus", value / 1e3);
+            case BYTES -> value >= 1024 ? String.format("%.1fKB", value / 1024) : String.format("%.0fB", value);
+            default -> String.format("%.1f", value);
+        };
+    }
+
+    // ===== ALLOCATION =====
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                    && threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        } catch (UnsupportedOperationException | LinkageError e) {
+            // not a HotSpot-style JVM; allocation just goes unmeasured
+        }
+        return null;
+    }
+
+    // bytes allocated by the current thread so far, -1 if the JVM cannot tell
+    static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    // ===== JFR EVENTS =====
+
+    @Name("pacman.Tick")
+    @Label("Game Tick")
+    @Category("Pac-Man")
+    public static class TickEvent extends Event {
+        @Label("Tick")
+        long tick;
+        @Label("Tick Time") @Timespan
+        long tickTime;
+        @Label("Pac-Man") @Timespan
+        long pacman;
+        @Label("Ghosts") @Timespan
+        long ghosts;
+        @Label("Food Checks") @Timespan
+        long food;
+        @Label("Searches")
+        int searches;
+        @Label("Nodes Expanded")
+        int nodesExpanded;
+        @Label("Allocated") @DataAmount
+        long allocated;
+    }
+
+    @Name("pacman.Frame")
+    @Label("Frame Drawn")
+    @Category("Pac-Man")
+    public static class FrameEvent extends Event {
+        @Label("Draw Time") @Timespan
+        long drawTime;
+    }
+
+    @Name("pacman.LateTick")
+    @Label("Late Timer Tick")
+    @Category("Pac-Man")
+    public static class LateTickEvent extends Event {
+        @Label("Late By") @Timespan
+        long late;
+        @Label("Ticks Dropped")
+        long dropped;
+    }
+}
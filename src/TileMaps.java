@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Where tile maps come from besides GameEngine.STOCK_MAP: text files in the same
+ * tile codes, one row per line, and seeded generators for any size.
+ *
+ *   X wall   O empty   ' ' pellet   * power pellet   P Pac-Man   r p b o ghosts
+ *
+ * A row whose first and last tiles are both open is a wraparound tunnel, and so
+ * is a column whose top and bottom tiles are; the engine derives them in loadMap().
+ * Front ends take a map name: "stock", "generated-RxC" or "generated-RxC-seed",
+ * "open-RxC" or "open-RxC-seed", or anything else as a path to a map file. Any
+ * of them can end in ",ghosts=N" for a crowd: N more ghosts on pellet tiles
+ * (see withGhosts).
+ */
+public final class TileMaps {
+
+    static final String TILES = "XO *Prpbo";
+
+    private TileMaps() {
+    }
+
+    static String[] byName(String name) throws IOException {
+        int crowd = name.lastIndexOf(",ghosts=");
+        if (crowd >= 0) {
+            int extra = Integer.parseInt(name.substring(crowd + ",ghosts=".length()));
+            return withGhosts(byName(name.substring(0, crowd)), extra, 1);
+        }
+        if (name.equals("stock"))
+            return GameEngine.STOCK_MAP;
+        if (name.startsWith("generated-") || name.startsWith("open-")) {
+            String[] parts = name.substring(name.indexOf('-') + 1).split("-");
+            String[] size = parts[0].split("x");
+            int rows = Integer.parseInt(size[0]), cols = Integer.parseInt(size[1]);
+            long seed = parts.length > 1 ? Long.parseLong(parts[1]) : 1;
+            return name.startsWith("open-") ? generateOpen(rows, cols, seed) : generate(rows, cols, seed);
+        }
+        return load(Path.of(name));
+    }
+
+    static String[] load(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.US_ASCII), file.toString());
+    }
+
+    // Check that lines form a playable map: rectangular, known tiles only, one
+    // Pac-Man. Trailing blank lines are dropped. Errors name the source and line.
+    static String[] parse(List<String> lines, String source) {
+        List<String> rows = new ArrayList<>(lines);
+        while (!rows.isEmpty() && rows.get(rows.size() - 1).isBlank()) {
+            rows.remove(rows.size() - 1);
+        }
+        if (rows.size() < 3)
+            throw new IllegalArgumentException(source + ": a map needs at least 3 rows");
+
+        int columnCount = rows.get(0).length();
+        int pacmen = 0;
+        for (int r = 0; r < rows.size(); r++) {
+            String row = rows.get(r);
+            if (row.length() != columnCount)
+                throw new IllegalArgumentException(source + ":" + (r + 1) + ": row is " + row.length()
+                        + " tiles wide, the first row is " + columnCount);
+            for (int c = 0; c < columnCount; c++) {
+                char tile = row.charAt(c);
+                if (TILES.indexOf(tile) < 0)
+                    throw new IllegalArgumentException(source + ":" + (r + 1) + ": unknown tile '" + tile
+                            + "' in column " + (c + 1));
+                if (tile == 'P')
+                    pacmen++;
+            }
+        }
+        if (pacmen != 1)
+            throw new IllegalArgumentException(source + ": a map needs exactly one 'P', found " + pacmen);
+        return rows.toArray(new String[0]);
+    }
+
+    // A Pac-Man style board of any size: a maze carved by an iterative
+    // recursive backtracker on the odd tiles, with about a tenth of the inner
+    // walls knocked out for loops. Every 16th odd row and column opens onto the
+    // border as a tunnel; power pellets sit in the corners and one per 24x24
+    // area. Pac-Man starts top-center, the four ghosts around the center.
+    static String[] generate(int rows, int cols, long seed) {
+        rows = Math.max(rows, 7) | 1;
+        cols = Math.max(cols, 7) | 1;
+        Random random = new Random(seed);
+        char[][] grid = new char[rows][cols];
+        for (char[] row : grid)
+            Arrays.fill(row, 'X');
+
+        int[] stack = new int[(rows / 2) * (cols / 2)];
+        int top = 0;
+        stack[top++] = 1 * cols + 1;
+        grid[1][1] = ' ';
+        int[][] dirs = { { -2, 0 }, { 2, 0 }, { 0, -2 }, { 0, 2 } };
+        int[] order = { 0, 1, 2, 3 };
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int r = cell / cols, c = cell % cols;
+            for (int i = 3; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = order[i]; order[i] = order[j]; order[j] = t;
+            }
+            boolean carved = false;
+            for (int d : order) {
+                int nr = r + dirs[d][0], nc = c + dirs[d][1];
+                if (nr > 0 && nr < rows - 1 && nc > 0 && nc < cols - 1 && grid[nr][nc] == 'X') {
+                    grid[r + dirs[d][0] / 2][c + dirs[d][1] / 2] = ' ';
+                    grid[nr][nc] = ' ';
+                    stack[top++] = nr * cols + nc;
+                    carved = true;
+                    break;
+                }
+            }
+            if (!carved)
+                top--;
+        }
+
+        for (int r = 1; r < rows - 1; r++) {
+            for (int c = 1; c < cols - 1; c++) {
+                if (grid[r][c] == 'X' && (r % 2 == 1 || c % 2 == 1) && random.nextInt(10) == 0)
+                    grid[r][c] = ' ';
+            }
+        }
+
+        for (int r = 1 + 16; r < rows - 1; r += 32) {
+            grid[r][0] = 'O';
+            grid[r][cols - 1] = 'O';
+        }
+        for (int c = 1 + 16; c < cols - 1; c += 32) {
+            grid[0][c] = 'O';
+            grid[rows - 1][c] = 'O';
+        }
+
+        grid[1][1] = grid[1][cols - 2] = grid[rows - 2][1] = grid[rows - 2][cols - 2] = '*';
+        for (int r = 12; r < rows - 12; r += 24) {
+            for (int c = 12; c < cols - 12; c += 24) {
+                int pr = (r + random.nextInt(12)) | 1, pc = (c + random.nextInt(12)) | 1;
+                if (pr < rows - 1 && pc < cols - 1)
+                    grid[pr][pc] = '*'; // odd tiles are always carved
+            }
+        }
+        return placeActors(grid);
+    }
+
+    // A walled floor with random 1..6 tile rectangular blocks covering about a
+    // fifth of it: big open areas with many equally short paths, where A*
+    // expands the most ties and JPS jumps the furthest. Blocks may wall off
+    // small pockets. Power pellets in the open corners, actors as in generate().
+    static String[] generateOpen(int rows, int cols, long seed) {
+        rows = Math.max(rows, 7) | 1;
+        cols = Math.max(cols, 7) | 1;
+        Random random = new Random(seed);
+        char[][] grid = new char[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                grid[r][c] = r == 0 || c == 0 || r == rows - 1 || c == cols - 1 ? 'X' : ' ';
+            }
+        }
+
+        int blocks = (rows - 2) * (cols - 2) / 60;
+        for (int i = 0; i < blocks; i++) {
+            int h = 1 + random.nextInt(6), w = 1 + random.nextInt(6);
+            int top = 1 + random.nextInt(rows - 2), left = 1 + random.nextInt(cols - 2);
+            for (int r = top; r < Math.min(top + h, rows - 1); r++) {
+                for (int c = left; c < Math.min(left + w, cols - 1); c++) {
+                    grid[r][c] = 'X';
+                }
+            }
+        }
+
+        int[][] corners = { { 1, 1 }, { 1, cols - 2 }, { rows - 2, 1 }, { rows - 2, cols - 2 } };
+        for (int[] corner : corners) {
+            if (grid[corner[0]][corner[1]] == ' ')
+                grid[corner[0]][corner[1]] = '*';
+        }
+        return placeActors(grid);
+    }
+
+    // Pac-Man top-center, the four ghosts around the center, on whatever was there
+    private static String[] placeActors(char[][] grid) {
+        int rows = grid.length, cols = grid[0].length;
+        int midR = (rows / 2) | 1, midC = (cols / 2) | 1;
+        grid[1][midC] = 'P';
+        grid[midR][midC] = 'r';
+        grid[midR][midC + 2 < cols - 1 ? midC + 2 : midC] = 'p';
+        grid[midR + 2 < rows - 1 ? midR + 2 : midR][midC] = 'b';
+        grid[midR][midC - 2 > 0 ? midC - 2 : midC] = 'o';
+
+        String[] map = new String[rows];
+        for (int r = 0; r < rows; r++)
+            map[r] = new String(grid[r]);
+        return map;
+    }
+
+    // A copy of tileMap with count more ghosts, cycling Blinky, Pinky, Inky and
+    // Clyde, each on a pellet tile picked at random (at most one per tile, so a
+    // small map takes fewer). For stress runs with hundreds or thousands of ghosts.
+    static String[] withGhosts(String[] tileMap, int count, long seed) {
+        char[][] grid = new char[tileMap.length][];
+        int pellets = 0;
+        for (int r = 0; r < tileMap.length; r++) {
+            grid[r] = tileMap[r].toCharArray();
+            for (char tile : grid[r])
+                if (tile == ' ')
+                    pellets++;
+        }
+        int cols = tileMap[0].length();
+        int[] free = new int[pellets];
+        int n = 0;
+        for (int r = 0; r < grid.length; r++)
+            for (int c = 0; c < cols; c++)
+                if (grid[r][c] == ' ')
+                    free[n++] = r * cols + c;
+
+        // partial Fisher-Yates: the first count entries end up a random sample
+        Random random = new Random(seed);
+        String types = "rpbo";
+        count = Math.min(count, pellets);
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(pellets - i);
+            int tile = free[j];
+            free[j] = free[i];
+            grid[tile / cols][tile % cols] = types.charAt(i % types.length());
+        }
+
+        String[] map = new String[grid.length];
+        for (int r = 0; r < grid.length; r++)
+            map[r] = new String(grid[r]);
+        return map;
+    }
+}
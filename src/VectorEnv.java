@@ -0,0 +1,171 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * N PacManEnvs stepped together: step(actions) plays a tick in each, in blocks
+ * of BLOCK on a ForkJoinPool, into flat arrays where environment i has slice i.
+ * A finished episode is reset on the spot, so dones[i] and rewards[i] are the
+ * last step's and the observation is the new episode's. A run is the same for
+ * any thread count. The environments share the maze's graph and routing table.
+ */
+public class VectorEnv {
+
+    static final int BLOCK = 16; // environments a thread takes at a time
+
+    final PacManEnv[] envs;
+    final int tileCount;
+    final int entityCount;
+
+    final byte[] tiles;
+    final int[] entities;
+    final int[] scaredTicks;
+    final float[] rewards;
+    final boolean[] dones;
+
+    private final int threads;
+    private ForkJoinPool pool;
+    private StepTask[] tasks;
+    private final AtomicInteger nextBlock = new AtomicInteger();
+    private int[] actions; // this step's, for the tasks
+
+    public VectorEnv(String[] tileMap, int count, int threads) {
+        GameEngine first = new GameEngine(tileMap, 0);
+        this.tileCount = first.rowCount * first.columnCount;
+        this.entityCount = first.entities.count;
+        this.threads = Math.max(1, threads);
+        tiles = new byte[count * tileCount];
+        entities = new int[count * entityCount * PacManEnv.ENTITY_FIELDS];
+        scaredTicks = new int[count];
+        rewards = new float[count];
+        dones = new boolean[count];
+        envs = new PacManEnv[count];
+        for (int i = 0; i < count; i++) {
+            envs[i] = new PacManEnv(i == 0 ? first : new GameEngine(first, 0), this, i);
+        }
+    }
+
+    public int size() {
+        return envs.length;
+    }
+
+    // Start every environment on a new episode, environment i from a seed of its
+    // own derived from seed (as BatchRunner seeds its games).
+    public void reset(long seed) {
+        for (int i = 0; i < envs.length; i++) {
+            envs[i].reset(seed * 1_000_003L + i);
+        }
+    }
+
+    // One tick in every environment, environment i playing actions[i].
+    public void step(int[] actions) {
+        if (actions.length != envs.length)
+            throw new IllegalArgumentException(actions.length + " actions for " + envs.length + " environments");
+        this.actions = actions;
+        nextBlock.set(0);
+        if (threads <= 1 || envs.length <= BLOCK) {
+            stepBlocks();
+            return;
+        }
+        if (pool == null) {
+            pool = new ForkJoinPool(threads - 1);
+            tasks = new StepTask[threads];
+            for (int t = 0; t < threads; t++) {
+                tasks[t] = new StepTask();
+            }
+        }
+        for (int t = 1; t < tasks.length; t++) {
+            tasks[t].reinitialize();
+            pool.execute(tasks[t]);
+        }
+        tasks[0].reinitialize();
+        tasks[0].invoke(); // this thread takes blocks too
+        for (StepTask task : tasks) {
+            task.join();
+        }
+    }
+
+    // the pool's threads; the environments stay usable on the calling thread
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    // take blocks of environments until none are left
+    private void stepBlocks() {
+        int count = envs.length;
+        int from;
+        while ((from = nextBlock.getAndAdd(BLOCK)) < count) {
+            int to = Math.min(from + BLOCK, count);
+            for (int i = from; i < to; i++) {
+                PacManEnv env = envs[i];
+                env.step(actions[i]);
+                if (dones[i]) {
+                    env.game.restart();
+                    env.observe();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class StepTask extends RecursiveAction {
+        @Override
+        protected void compute() {
+            stepBlocks();
+        }
+    }
+
+    // java VectorEnv envs=256 threads=8 steps=4000 map=stock: environment steps
+    // per second with random actions
+    public static void main(String[] args) throws java.io.IOException {
+        int count = 256;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int steps = 4000;
+        String map = "stock";
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            switch (kv[0]) {
+                case "envs" -> count = Integer.parseInt(kv[1]);
+                case "threads" -> threads = Integer.parseInt(kv[1]);
+                case "steps" -> steps = Integer.parseInt(kv[1]);
+                case "map" -> map = kv[1];
+                default -> throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+
+        VectorEnv vector = new VectorEnv(TileMaps.byName(map), count, threads);
+        vector.reset(1);
+        Random random = new Random(1);
+        int[][] actions = new int[64][count]; // cycled, so picking actions costs nothing per step
+        for (int[] row : actions) {
+            for (int i = 0; i < count; i++) {
+                row[i] = random.nextInt(PacManEnv.ACTIONS);
+            }
+        }
+
+        for (int round = 0; round < 2; round++) { // the first round warms up the JIT
+            long episodes = 0;
+            double rewards = 0;
+            long start = System.nanoTime();
+            for (int s = 0; s < steps; s++) {
+                vector.step(actions[s & 63]);
+                for (int i = 0; i < count; i++) {
+                    rewards += vector.rewards[i];
+                    if (vector.dones[i])
+                        episodes++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (round == 1) {
+                System.out.printf("%d envs x %d steps on %d threads in %.2fs: %.2fM env steps/s,"
+                        + " %d episodes ended, reward %.1f per step%n", count, steps, threads, seconds,
+                        (double) count * steps / seconds / 1e6, episodes, rewards / ((double) count * steps));
+            }
+        }
+        vector.close();
+    }
+}